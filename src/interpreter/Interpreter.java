@@ -2,14 +2,12 @@ package interpreter;
 
 import java.awt.Color;
 import java.util.HashMap;
-import java.util.Hashtable;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.Stack;
 
+import parser.FlatTree;
 import tree.Tree;
 import tokenizer.Token;
-import tokenizer.TokenType;
 
 /**
  * @author Joopyo Hong
@@ -18,9 +16,11 @@ import tokenizer.TokenType;
 public class Interpreter {
     private Turtle turtle;
     private DrawingArea canvas;
-    private Hashtable<String, Double> globalVariables;
-    private Map<String, Tree<Token>> procedures;
-    private Stack<Hashtable<String, Double>> stackFrames;
+    private HashMap<String, Double> globalVariables;
+    private Map<String, Procedure> procedures;
+    private final FlatTree.Visitor<Void> executor = new Executor();
+    private Stack<HashMap<String, Double>> stackFrames;
+    private StreamingProgram stream = null; // the program being run while it is parsed, if any
     boolean running = true;
 
     /**
@@ -31,8 +31,8 @@ public class Interpreter {
     public Interpreter(DrawingArea canvas) {
         this.canvas = canvas;
         turtle = new Turtle(canvas);
-        globalVariables = new Hashtable<String, Double>();
-        procedures = new HashMap<String, Tree<Token>>();
+        globalVariables = new HashMap<String, Double>();
+        procedures = new HashMap<String, Procedure>();
     }
     
     /**
@@ -43,10 +43,32 @@ public class Interpreter {
         turtle.home();
         globalVariables.clear();
         procedures.clear();
-        stackFrames = new Stack<Hashtable<String, Double>>();
+        stackFrames = new Stack<HashMap<String, Double>>();
         stackFrames.push(globalVariables);
     }
 
+    /**
+     * Interprets a program while it is being parsed. Each top-level command
+     * is run as soon as it has been parsed, and a procedure call waits until
+     * the procedure has been parsed.
+     * 
+     * @param program The program, as it is being parsed.
+     */
+    void interpret(StreamingProgram program) {
+        stream = program;
+        try {
+            Tree<Token> command;
+            while (running && (command = program.nextCommand()) != null) {
+                interpret(command);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (running) error("Interrupted while waiting for the parser.");
+        } finally {
+            stream = null;
+        }
+    }
+
     /**
      * Interprets the tree rooted at the given node.
      * 
@@ -57,152 +79,207 @@ public class Interpreter {
         if (node == null)
             return;
         
-        String command = getStringFrom(node);
+        FlatTree tree = FlatTree.fromTree(node);
+        interpret(tree, tree.root());
+    }
+    
+    /**
+     * Interprets the flat tree rooted at the given node.
+     * 
+     * @param tree The tree holding the node.
+     * @param node The root of the subtree to be interpreted.
+     */
+    void interpret(FlatTree tree, int node) {
+        if (!running) return;
+        tree.accept(node, executor);
+    }
+    
+    /**
+     * Runs the command at a node; any node that is not a command is an error.
+     */
+    private class Executor implements FlatTree.Visitor<Void> {
         
-        switch (command) {
-            case "program": {
-                childrenCheck(node, 2);
-                findAllProcedures(node.child(1));
-                interpret(node.child(0));
-                break;
-            }
+        @Override
+        public Void visitKeyword(FlatTree tree, int node, int opcode) {
+            switch (opcode) {
+                case FlatTree.PROGRAM: {
+                    childrenCheck(tree, node, 2);
+                    findAllProcedures(tree, tree.child(node, 1));
+                    interpret(tree, tree.child(node, 0));
+                    break;
+                }
+                    
+                case FlatTree.BLOCK: {
+                    for (int child = tree.firstChild(node); child != FlatTree.NONE; child = tree.nextSibling(child)) {
+                        interpret(tree, child);
+                    }
+                    break;
+                }
+                    
+                case FlatTree.FORWARD: {
+                    childrenCheck(tree, node, 1);
+                    double distance = evaluateExpression(tree, tree.firstChild(node));
+                    turtle.forward(distance);
+                    break;
+                }
+                    
+                case FlatTree.RIGHT: {
+                    childrenCheck(tree, node, 1);
+                    double turnDegree = evaluateExpression(tree, tree.firstChild(node));
+                    turtle.right(turnDegree);
+                    break;
+                }
                 
-            case "block": {
-                Iterator<Tree<Token>> children = node.children();
-                while (children.hasNext() == true) {
-                    interpret(children.next());
+                case FlatTree.LEFT: {
+                    childrenCheck(tree, node, 1);
+                    double turnDegree = evaluateExpression(tree, tree.firstChild(node));
+                    turtle.left(turnDegree);
+                    break;
+                }
+                    
+                case FlatTree.FACE: {
+                    childrenCheck(tree, node, 1);
+                    double newDegree = evaluateExpression(tree, tree.firstChild(node));
+                    turtle.setDegrees(-newDegree);
+                    break;
                 }
-                break;
-            }
                 
-            case "forward": {
-                childrenCheck(node, 1);
-                double distance = evaluateExpression(node.child(0));
-                turtle.forward(distance);
-                break;
-            }
+                case FlatTree.PENUP: {
+                    childrenCheck(tree, node, 0);
+                    turtle.penup();
+                    break;
+                }
                 
-            case "right": {
-                childrenCheck(node, 1);
-                double turnDegree = evaluateExpression(node.child(0));
-                turtle.right(turnDegree);
-                break;
-            }
-            
-            case "left": {
-                childrenCheck(node, 1);
-                double turnDegree = evaluateExpression(node.child(0));
-                turtle.left(turnDegree);
-                break;
-            }
+                case FlatTree.PENDOWN: {
+                    childrenCheck(tree, node, 0);
+                    turtle.pendown();
+                    break;
+                }
                 
-            case "face": {
-                childrenCheck(node, 1);
-                double newDegree = evaluateExpression(node.child(0));
-                turtle.setDegrees(-newDegree);
-                break;
-            }
-            
-            case "penup": {
-                childrenCheck(node, 0);
-                turtle.penup();
-                break;
-            }
-            
-            case "pendown": {
-                childrenCheck(node, 0);
-                turtle.pendown();
-                break;
-            }
-            
-            case "home": {
-                childrenCheck(node, 0);
-                turtle.home();
-                break;
-            }
-            
-            case "color": {
-                childrenCheck(node, 3);
-                double firstRGB = evaluateExpression(node.child(0));
-                double secondRGB = evaluateExpression(node.child(1));
-                double thirdRGB = evaluateExpression(node.child(2));
-               
+                case FlatTree.HOME: {
+                    childrenCheck(tree, node, 0);
+                    turtle.home();
+                    break;
+                }
                 
-                if (firstRGB > 255 || secondRGB > 255 || thirdRGB > 255 ||
-                        firstRGB < 0 || secondRGB < 0 || thirdRGB < 0) {
-                    error("R, g, or b are outside of the range 0 to 255, inclusive.");
+                case FlatTree.COLOR: {
+                    childrenCheck(tree, node, 3);
+                    int child = tree.firstChild(node);
+                    double firstRGB = evaluateExpression(tree, child);
+                    child = tree.nextSibling(child);
+                    double secondRGB = evaluateExpression(tree, child);
+                    child = tree.nextSibling(child);
+                    double thirdRGB = evaluateExpression(tree, child);
+                   
+                    
+                    if (firstRGB > 255 || secondRGB > 255 || thirdRGB > 255 ||
+                            firstRGB < 0 || secondRGB < 0 || thirdRGB < 0) {
+                        error("R, g, or b are outside of the range 0 to 255, inclusive.");
+                    }
+                    
+                    turtle.color((int)firstRGB, (int)secondRGB, (int)thirdRGB);
+                    break;
                 }
                 
-                turtle.color((int)firstRGB, (int)secondRGB, (int)thirdRGB);
-                break;
-            }
-            
-            case "jump": {
-                childrenCheck(node, 2);
-                double x = evaluateExpression(node.child(0));
-                double y = evaluateExpression(node.child(1));
+                case FlatTree.JUMP: {
+                    childrenCheck(tree, node, 2);
+                    double x = evaluateExpression(tree, tree.child(node, 0));
+                    double y = evaluateExpression(tree, tree.child(node, 1));
+                    
+                    turtle.jump(x,y);
+                    break;
+                }
                 
-                turtle.jump(x,y);
-                break;
-            }
-            
-            case "set": {
-                childrenCheck(node, 2);
-                String variable = getStringFrom(node.child(0));
-                double value = evaluateExpression(node.child(1));                
-                store(variable, value);
-                break;
-            }
-            
-            case "repeat": {
-                childrenCheck(node, 2);
-                double preCast = evaluateExpression(node.child(0));
-                int postCast = (int) preCast;
-                if ((double)postCast != preCast)
-                    error("Expression following repeat must evalulate to an int value.");
+                case FlatTree.SET: {
+                    childrenCheck(tree, node, 2);
+                    String variable = tree.text(tree.child(node, 0));
+                    double value = evaluateExpression(tree, tree.child(node, 1));                
+                    store(variable, value);
+                    break;
+                }
                 
-                for (int i = 0; i < postCast; i++) {
-                    interpret(node.child(1));
+                case FlatTree.REPEAT: {
+                    childrenCheck(tree, node, 2);
+                    double preCast = evaluateExpression(tree, tree.child(node, 0));
+                    int postCast = (int) preCast;
+                    if ((double)postCast != preCast)
+                        error("Expression following repeat must evalulate to an int value.");
+                    
+                    int body = tree.child(node, 1);
+                    for (int i = 0; i < postCast; i++) {
+                        interpret(tree, body);
+                    }
+                    break;
                 }
-                break;
-            }
-            
-            case "while": {
-                childrenCheck(node, 2);
-                while (evaluateCondition(node.child(0))) {
-                    interpret(node.child(1));
+                
+                case FlatTree.WHILE: {
+                    childrenCheck(tree, node, 2);
+                    int condition = tree.child(node, 0);
+                    int body = tree.child(node, 1);
+                    while (evaluateCondition(tree, condition)) {
+                        interpret(tree, body);
+                    }
+                    break;
                 }
-                break;
-            }
-            
-            case "if": {
-                if (node.numberOfChildren() == 2) {
-                    if (evaluateCondition(node.child(0))) {
-                        interpret(node.child(1));
+                
+                case FlatTree.IF: {
+                    int children = tree.numberOfChildren(node);
+                    if (children == 2) {
+                        if (evaluateCondition(tree, tree.child(node, 0))) {
+                            interpret(tree, tree.child(node, 1));
+                        }
+                    } else if (children == 3) {
+                        if (evaluateCondition(tree, tree.child(node, 0))) {
+                            interpret(tree, tree.child(node, 1));
+                        } else interpret(tree, tree.child(node, 2));
+                    } else {
+                        error("Tree that represents 'if' must have either 2 or 3 children.");
                     }
-                } else if (node.numberOfChildren() == 3) {
-                    if (evaluateCondition(node.child(0))) {
-                        interpret(node.child(1));
-                    } else interpret(node.child(2));
-                } else {
-                    error("Tree that represents 'if' must have either 2 or 3 children.");
+                        
+                    break;
                 }
+                
+                case FlatTree.DO: {
+                    childrenCheck(tree, node, 2);
+                    callProcedure(tree.text(tree.child(node, 0)), tree, tree.child(node, 1));
+                    break;
                     
-                break;
-            }
-            
-            case "do": {
-                childrenCheck(node, 2);
-                callProcedure(getStringFrom(node.child(0)), node.child(1));
-                break;
+                }
                 
+                default: {
+                    unimplemented(tree, node);
+                }
             }
-            
-            default: {
-                error("Unimplemented command:\n" + command);
-            }
-        }              
-       
+            return null;
+        }
+        
+        @Override
+        public Void visitOperator(FlatTree tree, int node, int opcode) {
+            return unimplemented(tree, node);
+        }
+        
+        @Override
+        public Void visitName(FlatTree tree, int node, String name) {
+            return unimplemented(tree, node);
+        }
+        
+        @Override
+        public Void visitNumber(FlatTree tree, int node, double value) {
+            return unimplemented(tree, node);
+        }
+        
+        @Override
+        public Void visitToken(FlatTree tree, int node, Token token) {
+            return unimplemented(tree, node);
+        }
+        
+        /**
+         * Reports a node that is not a command.
+         */
+        private Void unimplemented(FlatTree tree, int node) {
+            error("Unimplemented command:\n" + tree.text(node));
+            return null;
+        }
     }
     
     /**
@@ -231,180 +308,91 @@ public class Interpreter {
     /**
      * Checks whether the number of children is correct for the given root.
      * 
+     * @param tree The tree holding the root
      * @param node Root of the Tree to examine
      * @param rightNumOfChildren The correct number of children for the given root
      */
-    void childrenCheck(Tree<Token> node, int rightNumOfChildren) {
-        if (node.numberOfChildren() != rightNumOfChildren)
-            error("Tree that represents '" + getStringFrom(node) + "' must have " + 
+    void childrenCheck(FlatTree tree, int node, int rightNumOfChildren) {
+        if (tree.numberOfChildren(node) != rightNumOfChildren)
+            error("Tree that represents '" + tree.text(node) + "' must have " + 
         rightNumOfChildren + " children.");
     }
     
-    /**
-     * Checks whether the number of children is correct for the given root.
-     * 
-     * @param node Root of the Tree to examine
-     * @param rightNumOfChildren The correct number of children for the given root
-     */
-    boolean childrenCheckBool(Tree<Token> node, int rightNumOfChildren) {
-        return (node.numberOfChildren() == rightNumOfChildren);
-    }
-    
     /**
      * Given the root of a Tree representing an expression (which may
      * be a simple variable or number, or something much more complex),
-     * evaluate the Tree and return the computed value.
+     * evaluate the Tree and return the computed value. Expressions are
+     * evaluated by a switch on the opcode rather than by a visitor, so
+     * that no Double is boxed per node.
      * 
+     * @param tree The tree holding the expression.
      * @param node The root of the expression Tree.
      * @return The value of the expression.
      */
-    private double evaluateExpression(Tree<Token> node) {
-        String root = getStringFrom(node);
-        // check children's # as well so as to bar away unary cases where +/- is merely a sign 
-        if (root.equals("+") && childrenCheckBool(node, 2)) {
-            if (getStringFrom(node.child(0)) == "+" || getStringFrom(node.child(0)) == "-") {
-                return evaluateExpression(node.child(0)) + evaluateUnsignedTerm(node.child(1));
-            } else {
-                return evaluateTerm(node.child(0)) + evaluateUnsignedTerm(node.child(1));
+    private double evaluateExpression(FlatTree tree, int node) {
+        int left = tree.firstChild(node);
+        // a +/- with one child is merely a sign
+        switch (tree.opcode(node)) {
+            case FlatTree.PLUS: {
+                int right = tree.nextSibling(left);
+                if (right == FlatTree.NONE) return evaluateExpression(tree, left);
+                return evaluateExpression(tree, left) + evaluateExpression(tree, right);
             }
-        } else if (root.equals("-") && childrenCheckBool(node, 2)) {
-            if (getStringFrom(node.child(0)) == "+" || getStringFrom(node.child(0)) == "-") {
-                return evaluateExpression(node.child(0)) - evaluateUnsignedTerm(node.child(1));
-            } else {
-                return evaluateTerm(node.child(0)) - evaluateUnsignedTerm(node.child(1));
+            case FlatTree.MINUS: {
+                int right = tree.nextSibling(left);
+                if (right == FlatTree.NONE) return -evaluateExpression(tree, left);
+                return evaluateExpression(tree, left) - evaluateExpression(tree, right);
             }
-        } else {
-            return evaluateTerm(node);
-        }
-
-    }
-    
-    /**
-     * Given the root of a Tree representing an unsigned term (which may
-     * be a simple variable or number, or something much more complex),
-     * evaluate the Tree and return the computed value.
-     * 
-     * @param node The root of the expression Tree.
-     * @return The value of the unsigned term.
-     */
-    private double evaluateUnsignedTerm(Tree<Token> node) {
-        String root = getStringFrom(node);
-        if (root.equals("*")) {
-            if (getStringFrom(node.child(0)) == "*" || getStringFrom(node.child(0)) == "/") {
-                return evaluateUnsignedTerm(node.child(0)) * evaluateFactor(node.child(1));
-            } else {
-                return evaluateUnsignedFactor(node.child(0)) * evaluateFactor(node.child(1));
-            }
-        } else if (root.equals("/")) {
-            if (getStringFrom(node.child(0)) == "*" || getStringFrom(node.child(0)) == "/") {
-                return evaluateUnsignedTerm(node.child(0)) / evaluateFactor(node.child(1));
-            } else {
-                return evaluateUnsignedFactor(node.child(0)) / evaluateFactor(node.child(1));
-            }
-        } else {
-            return evaluateTerm(node);
-        }
-    }
-
-    /**
-     * Given the root of a Tree representing a term (which may
-     * be a simple variable or number, or something much more complex),
-     * evaluate the Tree and return the computed value.
-     * 
-     * @param node The root of the expression Tree.
-     * @return The value of the term.
-     */
-    private double evaluateTerm(Tree<Token> node) {
-        String root = getStringFrom(node);
-        if (root.equals("*")) {
-            if (getStringFrom(node.child(0)) == "*" || getStringFrom(node.child(0)) == "/") {
-                return evaluateTerm(node.child(0)) * evaluateFactor(node.child(1));
-            } else {
-                return evaluateFactor(node.child(0)) * evaluateFactor(node.child(1));
-            }
-        } else if (root.equals("/")) {
-            if (getStringFrom(node.child(0)) == "*" || getStringFrom(node.child(0)) == "/") {
-                return evaluateTerm(node.child(0)) / evaluateFactor(node.child(1));
-            } else {
-                return evaluateFactor(node.child(0)) / evaluateFactor(node.child(1));
+            case FlatTree.TIMES:
+                return evaluateExpression(tree, left) * evaluateExpression(tree, tree.nextSibling(left));
+            case FlatTree.DIVIDE:
+                return evaluateExpression(tree, left) / evaluateExpression(tree, tree.nextSibling(left));
+            case FlatTree.NUMBER:
+                return tree.number(node);
+            case FlatTree.NAME:
+            case FlatTree.KEYWORD: {
+                String name = tree.text(node);
+                if (name.equals("getX")) {
+                    return turtle.getX();
+                } else if (name.equals("getY")) {
+                    return turtle.getY();
+                } else if (tree.opcode(node) == FlatTree.NAME) {
+                    return fetch(name);
+                }
+                break;
             }
-        } else {
-            return evaluateFactor(node);
-        }
-    }
-    
-    /**
-     * Given the root of a Tree representing a factor (which may
-     * be a simple variable or number, or something much more complex),
-     * evaluate the Tree and return the computed value.
-     * 
-     * @param node The root of the expression Tree.
-     * @return The value of the factor.
-     */
-    private double evaluateFactor(Tree<Token> node) {
-        String root = getStringFrom(node);
-        // check children's # as well so as to bar away unsigned factor that has +/- operator as its root
-
-        if (root.equals("+") && childrenCheckBool(node, 1)) {
-            childrenCheck(node, 1);
-            return evaluateUnsignedFactor(node.child(0));
-        } else if (root.equals("-") && childrenCheckBool(node, 1)) {
-            childrenCheck(node, 1);
-            return -(evaluateUnsignedFactor(node.child(0)));
-        } else {
-            return evaluateUnsignedFactor(node);
-        }
-    }
-    
-    /**
-     * Given the root of a Tree representing an unsigned factor (which may
-     * be a simple variable or number, or something much more complex),
-     * evaluate the Tree and return the computed value.
-     * 
-     * @param node The root of the expression Tree.
-     * @return The value of the unsigned factor.
-     */
-    private double evaluateUnsignedFactor(Tree<Token> node) {
-        String root = getStringFrom(node);
-        if (root.equals("getX")) {
-            return turtle.getX();
-        } else if (root.equals("getY")) {
-            return turtle.getY();
-        } else if (node.getValue().getType() == TokenType.NAME) {
-            return fetch(root);
-        } else if (node.getValue().getType() == TokenType.NUMBER) {
-            return Float.parseFloat(root);
-        } else {
-            return evaluateExpression(node);
         }
+        error("Tree that represents '" + tree.text(node) + "' is not an expression.");
+        return 0;
     }
     
     /**
      * Given the root of a Tree representing a condition,
      * evaluate the Tree and return the result.
      * 
+     * @param tree The tree holding the condition.
      * @param node The root of the condition Tree.
      * @return The value (true or false) of the condition.
      */
-    private boolean evaluateCondition(Tree<Token> node) {
-        childrenCheck(node, 2);
+    private boolean evaluateCondition(FlatTree tree, int node) {
+        childrenCheck(tree, node, 2);
              
-        String comparator = getStringFrom(node);
-        double left = evaluateExpression(node.child(0));
-        double right = evaluateExpression(node.child(1));
+        double left = evaluateExpression(tree, tree.child(node, 0));
+        double right = evaluateExpression(tree, tree.child(node, 1));
         
-        if (comparator.equals(">")) {
-            return left > right;
-            
-        } else if (comparator.equals("<")) {
-            return left < right;
-            
-        } else if (comparator.equals("=")) {
-            return left == right;
-            
-        } else {
-            error("Comparator was not found at the root of the Tree that represents condition.");
-            return false;
+        switch (tree.opcode(node)) {
+            case FlatTree.GREATER:
+                return left > right;
+                
+            case FlatTree.LESS:
+                return left < right;
+                
+            case FlatTree.EQUALS:
+                return left == right;
+                
+            default:
+                error("Comparator was not found at the root of the Tree that represents condition.");
+                return false;
         }
         
     }
@@ -417,18 +405,11 @@ public class Interpreter {
      * @return The value of that variable.
      */
     private double fetch(String name) {
-        Hashtable<String, Double> localVar = stackFrames.peek();
-        Double value = null;
+        HashMap<String, Double> localVar = stackFrames.peek();
+        Double value = localVar.get(name);
+        if (value == null) value = globalVariables.get(name);
+        if (value == null) error("Variable was undefined.");
         
-        if (localVar.containsKey(name)) {
-            value = localVar.get(name);
-        } else if (globalVariables.containsKey(name)) {
-            value = globalVariables.get(name);
-        } else {
-            error("Variable was undefined.");
-            
-        }
-            
         return value;
     }
 
@@ -440,7 +421,7 @@ public class Interpreter {
      * @param value The value to be given to the variable.
      */
     private void store(String name, double value) {
-        Hashtable<String, Double> localVar = stackFrames.peek();
+        HashMap<String, Double> localVar = stackFrames.peek();
         if (localVar.containsKey(name)) {
             localVar.put(name, value);
         } else if (globalVariables.containsKey(name)) {
@@ -461,26 +442,45 @@ public class Interpreter {
      *     <li>Pops the procedure's HashMap from the stack of HashMaps.</li>
      * </ul>
      * @param name The name of the procedure to be interpreted.
+     * @param tree The tree holding the list of actual parameters.
      * @param actualParameterListNode The list of actual parameters.
      */
-    private void callProcedure(String name, Tree<Token> actualParameterListNode) {
-        Tree<Token> def = procedures.get(name);
-        Tree<Token> parameterListNode = def.child(0).child(1);
+    private void callProcedure(String name, FlatTree tree, int actualParameterListNode) {
+        Procedure procedure = procedures.get(name);
+        if (procedure == null && stream != null) {
+            Tree<Token> def = null;
+            try {
+                def = stream.awaitProcedure(name);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (running) error("Interrupted while waiting for the parser.");
+                return; // stopped
+            }
+            if (def != null) {
+                FlatTree flat = FlatTree.fromTree(def);
+                procedure = new Procedure(flat, flat.root());
+                procedures.put(name, procedure);
+            }
+        }
+        if (procedure == null) error("No procedure named \"" + name + "\".");
+        FlatTree defTree = procedure.tree;
+        int parameterListNode = defTree.child(defTree.child(procedure.def, 0), 1);
         
-        if (parameterListNode.numberOfChildren() != actualParameterListNode.numberOfChildren())
+        if (defTree.numberOfChildren(parameterListNode) != tree.numberOfChildren(actualParameterListNode))
             error("Incorrect number of parameters for \"" + name + "\".");
         
-        Hashtable<String, Double> localVariable = new Hashtable<String, Double>();
+        HashMap<String, Double> localVariable = new HashMap<String, Double>();
         
-        for (int i = 0; i < parameterListNode.numberOfChildren(); i++) {
-            String param = getStringFrom(parameterListNode.child(i));
-            double arg = evaluateExpression(actualParameterListNode.child(i));
-            
-            localVariable.put(param, arg);
+        int param = defTree.firstChild(parameterListNode);
+        int arg = tree.firstChild(actualParameterListNode);
+        while (param != FlatTree.NONE) {
+            localVariable.put(defTree.text(param), evaluateExpression(tree, arg));
+            param = defTree.nextSibling(param);
+            arg = tree.nextSibling(arg);
         }
         
         stackFrames.push(localVariable);
-        interpret(def.child(1));
+        interpret(defTree, defTree.child(procedure.def, 1));
         stackFrames.pop();
     }
 
@@ -488,30 +488,18 @@ public class Interpreter {
      * Finds all the procedures in the parse tree and puts references to them in
      * the global variable <code>procedures</code>.
      * 
+     * @param tree
+     *            The tree holding the procedures.
      * @param listOfProcedures
      *            The root of the tree of procedures.
      */
-    private void findAllProcedures(Tree<Token> listOfProcedures) {
-        Iterator<Tree<Token>> children = listOfProcedures.children();
-        
-        while (children.hasNext()) {
-            Tree<Token> def = children.next();
-            String name = getStringFrom(def.child(0).child(0));
-            procedures.put(name, def);
+    private void findAllProcedures(FlatTree tree, int listOfProcedures) {
+        for (int def = tree.firstChild(listOfProcedures); def != FlatTree.NONE; def = tree.nextSibling(def)) {
+            String name = tree.text(tree.child(tree.child(def, 0), 0));
+            procedures.put(name, new Procedure(tree, def));
         }
     }
 
-    /**
-     * Returns the String in the Token in the given node.
-     * 
-     * @param node
-     *            The Tree<Token> from which to extract the String.
-     * @return The String value in this Tree<Token> node.
-     */
-    private static String getStringFrom(Tree<Token> node) {
-        return node.getValue().getValue();
-    }
-
     /**
      * Throws a RuntimeException containing a message.
      * @param string The message to be displayed.
@@ -519,4 +507,17 @@ public class Interpreter {
     private void error(String string) {
         throw new RuntimeException(string);
     }
+
+    /**
+     * A procedure definition: a "def" node and the tree holding it.
+     */
+    private static class Procedure {
+        final FlatTree tree;
+        final int def;
+        
+        Procedure(FlatTree tree, int def) {
+            this.tree = tree;
+            this.def = def;
+        }
+    }
 }
@@ -19,6 +19,8 @@ import javax.swing.JSlider;
 import javax.swing.JTextArea;
 import javax.swing.JTextField;
 import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.border.Border;
 import javax.swing.border.TitledBorder;
 import javax.swing.event.ChangeEvent;
@@ -27,7 +29,10 @@ import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
 import javax.swing.text.Document;
 
+import parser.BackgroundParser;
+import parser.FlatTree;
 import parser.Parser;
+import parser.ProgramCache;
 import parser.SyntaxException;
 import tokenizer.Token;
 import tree.Tree;
@@ -45,6 +50,11 @@ public class Logo extends JFrame implements Runnable {
     private Logo logoGui;
     private Interpreter interpreter;
     private Tree<Token> abstractSyntaxTree;
+    private StreamingProgram streamingProgram = null; // a file to be run as it is parsed, if any
+    private FlatTree compiledProgram = null; // a file to be run from its compiled form, if any
+    private Thread interpreterThread = null; // the thread running the program, if any
+    private BackgroundParser programParser;
+    private Timer parseTimer;
     private String currentFileName = null;
 
     private DrawingArea canvas;
@@ -59,6 +69,7 @@ public class Logo extends JFrame implements Runnable {
     private JMenuItem loadMenuItem;
     private JMenuItem saveMenuItem;
     private JMenuItem saveAsMenuItem;
+    private JMenuItem runFileMenuItem;
     
     private JButton parseButton;
     private JButton startButton;
@@ -69,6 +80,8 @@ public class Logo extends JFrame implements Runnable {
 
     private static final int INITIAL_CANVAS_WIDTH = 600;
     private static final int INITIAL_CANVAS_HEIGHT = 600;
+    private static final int PARSE_DELAY = 250; // milliseconds without edits before parsing
+    private static final int PARSE_CACHE_SIZE = 32;
 
     /**
      * Constructor for a Logo interpreter.
@@ -109,7 +122,17 @@ public class Logo extends JFrame implements Runnable {
         interpreter.initialize();
         changeSpeed(speedControlSlider.getValue());
         try {
-            interpreter.interpret(abstractSyntaxTree);
+            if (streamingProgram != null) {
+                StreamingProgram program = streamingProgram;
+                streamingProgram = null;
+                interpreter.interpret(program);
+            } else if (compiledProgram != null) {
+                FlatTree program = compiledProgram;
+                compiledProgram = null;
+                interpreter.interpret(program, program.root());
+            } else {
+                interpreter.interpret(abstractSyntaxTree);
+            }
         }
         catch (Throwable e) {
             displayStatus(e.getMessage());
@@ -119,6 +142,7 @@ public class Logo extends JFrame implements Runnable {
             return;
         }
         startButton.setEnabled(true);
+        runFileMenuItem.setEnabled(true);
         programTextArea.setEnabled(true);
         pauseButton.setEnabled(false);
         stopButton.setEnabled(false);
@@ -143,6 +167,7 @@ public class Logo extends JFrame implements Runnable {
         loadMenuItem = new JMenuItem("Load");
         saveMenuItem = new JMenuItem("Save");
         saveAsMenuItem = new JMenuItem("Save As...");
+        runFileMenuItem = new JMenuItem("Run File...");
 
         parseButton = new JButton("Parse");
         startButton = new JButton("Start");
@@ -190,6 +215,7 @@ public class Logo extends JFrame implements Runnable {
         fileMenu.add(loadMenuItem);
         fileMenu.add(saveMenuItem);
         fileMenu.add(saveAsMenuItem);
+        fileMenu.add(runFileMenuItem);
         this.setJMenuBar(menuBar);
         
         saveMenuItem.setEnabled(false);
@@ -233,29 +259,40 @@ public class Logo extends JFrame implements Runnable {
      */
     private void attachListeners() {
         
-        DocumentListener docListener = new DocumentListener() {
-            
-            private void adaptStart() {
-                abstractSyntaxTree = parse();
-                if (abstractSyntaxTree == null)
-                    startButton.setEnabled(false);
-                else
-                    startButton.setEnabled(true);
+        // edits are parsed in the background, once they pause
+        programParser = new BackgroundParser(PARSE_CACHE_SIZE);
+        parseTimer = new Timer(PARSE_DELAY, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent arg0) {
+                programParser.submit(programTextArea.getText(), new BackgroundParser.Listener() {
+                    @Override
+                    public void parsed(final String text, final Tree<Token> tree, final SyntaxException error) {
+                        SwingUtilities.invokeLater(new Runnable() {
+                            @Override
+                            public void run() {
+                                if (programParser.isLatest(text)) adaptStart(tree, error);
+                            }
+                        });
+                    }
+                });
             }
+        });
+        parseTimer.setRepeats(false);
+        DocumentListener docListener = new DocumentListener() {
             
             @Override
             public void insertUpdate(DocumentEvent e) {
-                adaptStart();
+                parseTimer.restart();
             }
             
             @Override
             public void removeUpdate(DocumentEvent e) {
-                adaptStart();
+                parseTimer.restart();
             }
 
             @Override
             public void changedUpdate(DocumentEvent e) {
-                adaptStart();
+                // attributes only; the text, and so its tree, are unchanged
             }
         };
         
@@ -284,13 +321,21 @@ public class Logo extends JFrame implements Runnable {
                 saveFileAs();
             }
         });
+        // Run File...
+        runFileMenuItem.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent arg0) {
+                runFile();
+            }
+        });
         // Parse
         parseButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent arg0) {
                 String parseTree;
                 try {
-                    parseTree = abstractSyntaxTree.toString();
+                    // the tree of the text as it is now, not as it was last parsed in the background
+                    parseTree = programParser.parse(programTextArea.getText()).toString();
                 } catch (Throwable e) {
                     parseTree = "Failed to parse due to syntax error.";
                 }
@@ -306,15 +351,15 @@ public class Logo extends JFrame implements Runnable {
         startButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent arg0) {
-                interpreter = new Interpreter(canvas);
-                startButton.setEnabled(false);
-                programTextArea.setEnabled(false);
-                stopButton.setEnabled(true);
-                pauseButton.setEnabled(true);
-                interpreter.running = true;
-
-                Thread thread = new Thread(logoGui);
-                thread.start();
+                // the text may have changed since it was last parsed
+                parseTimer.stop();
+                try {
+                    adaptStart(programParser.parse(programTextArea.getText()), null);
+                } catch (SyntaxException e) {
+                    adaptStart(null, e);
+                    return;
+                }
+                startInterpreter();
             }
         });
         // Pause
@@ -345,7 +390,11 @@ public class Logo extends JFrame implements Runnable {
             @Override
             public void actionPerformed(ActionEvent arg0) {
                 interpreter.running = false;
+                if (interpreterThread != null) {
+                    interpreterThread.interrupt(); // in case it waits for the parser
+                }
                 startButton.setEnabled(true);
+                runFileMenuItem.setEnabled(true);
                 stopButton.setEnabled(false);
                 pauseButton.setEnabled(false);
                 programTextArea.setEnabled(true);
@@ -362,27 +411,32 @@ public class Logo extends JFrame implements Runnable {
     }
 
     /**
-     * Parses the text in the <code>programTextArea</code> and returns it as a
-     * binary tree, or <code>null</code> if the text fails to parse. Either way,
-     * a message is put in the <code>errorField</code>.
+     * Takes the result of parsing the text in the <code>programTextArea</code>
+     * as the program to be run, and enables the Start button if it parsed,
+     * unless a program is running. Either way, a message is put in the
+     * <code>errorField</code>.
      * 
-     * @return The resultant abstract syntax tree.
+     * @param tree The tree of the program text, or <code>null</code>.
+     * @param error The syntax error in the program text, or <code>null</code>.
      */
-    Tree<Token> parse() {
-        Parser parser = new Parser(programTextArea.getText());
-        Tree<Token> ast = null;
-
-        displayStatus("");
-        try {
-            if (parser.isProgram()) {
-                displayStatus("Program appears to be OK.");
-                ast = parser.stack.peek();
-            }
+    private void adaptStart(Tree<Token> tree, SyntaxException error) {
+        abstractSyntaxTree = tree;
+        if (tree != null) {
+            displayStatus("Program appears to be OK.");
+            startButton.setEnabled(!isRunning());
+        } else {
+            displayStatus(error.getMessage());
+            startButton.setEnabled(false);
         }
-        catch (Throwable e) {
-            displayStatus(e.getMessage());
-        }
-        return ast;
+    }
+
+    /**
+     * Tells whether a program is running, which is while it can be stopped.
+     *
+     * @return <code>true</code> if a program is running.
+     */
+    private boolean isRunning() {
+        return stopButton.isEnabled();
     }
 
     /**
@@ -464,6 +518,78 @@ public class Logo extends JFrame implements Runnable {
         }
     }
 
+    /**
+     * Asks the user for a file, and runs the program in it while it is being
+     * parsed, without loading it into the <code>programTextArea</code>. The
+     * drawing starts as soon as the first command has been parsed. Once
+     * parsed, the program is compiled next to the file, and run from there
+     * the next time, for as long as the file is unchanged.
+     */
+    void runFile() {
+        FileDialog dialog = new FileDialog(new JFrame(),
+                                           "Run a Logo program",
+                                           FileDialog.LOAD);
+        dialog.setVisible(true);
+        String directory = dialog.getDirectory();
+        String file = dialog.getFile();
+        if (directory == null || file == null)
+            return;
+        String fileName = directory + file;
+
+        final ProgramCache cache;
+        try {
+            cache = new ProgramCache(new File(fileName));
+        }
+        catch (IOException e) {
+            displayStatus("Problem reading input file: " + fileName);
+            return;
+        }
+        FlatTree compiled = cache.load();
+        if (compiled != null) {
+            displayStatus("Running " + fileName + " (compiled)");
+            compiledProgram = compiled;
+            startInterpreter();
+            return;
+        }
+        final Parser parser = cache.newParser();
+        final StreamingProgram program = new StreamingProgram();
+        Thread parsing = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                if (!program.parse(parser)) return;
+                try {
+                    cache.store(FlatTree.fromTree(parser.stack.peek()));
+                }
+                catch (IOException e) {
+                    // the program runs all the same, and is compiled next time
+                }
+            }
+        }, "Parser");
+        parsing.setDaemon(true);
+        parsing.start();
+        displayStatus("Running " + fileName);
+        streamingProgram = program;
+        startInterpreter();
+    }
+
+    /**
+     * Starts a new Interpreter on a thread of its own, which runs
+     * {@link #run()}, and sets the buttons for a running program.
+     */
+    private void startInterpreter() {
+        parseTimer.stop(); // a late result must not enable Start again
+        interpreter = new Interpreter(canvas);
+        startButton.setEnabled(false);
+        runFileMenuItem.setEnabled(false);
+        programTextArea.setEnabled(false);
+        stopButton.setEnabled(true);
+        pauseButton.setEnabled(true);
+        interpreter.running = true;
+
+        interpreterThread = new Thread(logoGui);
+        interpreterThread.start();
+    }
+
     /**
      * Saves the program text on a file of the user's choice.
      */
@@ -0,0 +1,149 @@
+package interpreter;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import parser.Parser;
+import parser.ProgramListener;
+import tokenizer.Token;
+import tree.Tree;
+
+/**
+ * A program that is handed from a Parser on one thread to an Interpreter on
+ * another, one top-level command or procedure at a time, so that the program
+ * can be run while it is still being parsed. The interpreter waits only for
+ * the command it is to run next, or for a procedure it calls.
+ * <p>
+ * If the program has a syntax error, the commands before it are run anyway,
+ * and the error is thrown to the interpreter once it needs what follows.
+ *
+ * @author Joopyo Hong
+ */
+public class StreamingProgram implements ProgramListener {
+    private static final Tree<Token> END = new Tree<Token>(Token.keyword("block")); // after the last command
+
+    private final BlockingQueue<Tree<Token>> commands = new LinkedBlockingQueue<Tree<Token>>();
+    private final Map<String, Tree<Token>> procedures = new HashMap<String, Tree<Token>>();
+    private boolean commandsEnded = false;
+    private boolean finished = false;
+    private Throwable error = null;
+
+    /**
+     * Parses a program with the given Parser, passing its commands and
+     * procedures on, and then finishes this program. Meant to be run on a
+     * thread of its own. The program is finished even if the parser fails
+     * with an Error, such as a StackOverflowError on a deeply nested program,
+     * which is then thrown again.
+     *
+     * @param parser The Parser of the program.
+     * @return <code>true</code> if the program was parsed without error.
+     */
+    public boolean parse(Parser parser) {
+        try {
+            parser.isProgram(this);
+            finish(null);
+            return true;
+        } catch (RuntimeException e) {
+            finish(e);
+            return false;
+        } catch (Error e) {
+            finish(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Adds a top-level command. Called by the Parser.
+     *
+     * @param command The tree of the command.
+     */
+    @Override
+    public void command(Tree<Token> command) {
+        commands.add(command);
+    }
+
+    /**
+     * Adds a procedure. Called by the Parser.
+     *
+     * @param procedure The tree of the procedure.
+     */
+    @Override
+    public synchronized void procedure(Tree<Token> procedure) {
+        endCommands();
+        procedures.put(procedure.child(0).child(0).getValue().getValue(), procedure);
+        notifyAll();
+    }
+
+    /**
+     * Marks the end of parsing. No commands or procedures may be added after.
+     *
+     * @param error The error that ended parsing, or <code>null</code> if the program was parsed.
+     */
+    public synchronized void finish(Throwable error) {
+        endCommands();
+        this.error = error;
+        finished = true;
+        notifyAll();
+    }
+
+    /**
+     * Returns the next top-level command, waiting until it has been parsed.
+     * After the last command, it waits until parsing has finished.
+     *
+     * @return The tree of the next command, or <code>null</code> if there are no more.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     * @exception RuntimeException The error that ended parsing, if there are no more commands;
+     *            an Error is thrown as it is, and any other Throwable wrapped.
+     */
+    public Tree<Token> nextCommand() throws InterruptedException {
+        Tree<Token> command = commands.take();
+        if (command != END) return command;
+        commands.add(END);
+        synchronized (this) {
+            while (!finished) {
+                wait();
+            }
+            if (error != null) throwError();
+        }
+        return null;
+    }
+
+    /**
+     * Returns the procedure with the given name, waiting until it has been
+     * parsed, or until parsing has finished without it.
+     *
+     * @param name The name of the procedure.
+     * @return The tree of the procedure, or <code>null</code> if there is no such procedure.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     * @exception RuntimeException The error that ended parsing, if it came before the procedure;
+     *            an Error is thrown as it is, and any other Throwable wrapped.
+     */
+    public synchronized Tree<Token> awaitProcedure(String name) throws InterruptedException {
+        while (!procedures.containsKey(name) && !finished) {
+            wait();
+        }
+        Tree<Token> procedure = procedures.get(name);
+        if (procedure == null && error != null) throwError();
+        return procedure;
+    }
+
+    /**
+     * Throws the error that ended parsing to the interpreter.
+     */
+    private void throwError() {
+        if (error instanceof RuntimeException) throw (RuntimeException) error;
+        if (error instanceof Error) throw (Error) error;
+        throw new RuntimeException(error);
+    }
+
+    /**
+     * Tells the interpreter that no more commands follow, once.
+     */
+    private void endCommands() {
+        if (commandsEnded) return;
+        commandsEnded = true;
+        commands.add(END);
+    }
+}
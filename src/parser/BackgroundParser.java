@@ -0,0 +1,230 @@
+package parser;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import tokenizer.Token;
+import tree.Tree;
+
+/**
+ * Parses the text of a program that is being edited on a thread of its own,
+ * so that the thread doing the editing never waits for the parser. Texts are
+ * parsed in the order they are submitted; one that has been followed by a
+ * newer text before its turn comes is not parsed at all, and its result is
+ * not reported; one that is being parsed when a newer text comes is given up
+ * after the command or procedure being parsed. Parsing is incremental, from
+ * one parsed text to the next.
+ * <p>
+ * The results are cached by the SHA-256 hash of the text, so a text that was
+ * parsed recently, as when an edit is undone, is never parsed again.
+ *
+ * @author Joopyo Hong
+ */
+public class BackgroundParser {
+
+    /**
+     * Receives the results of parsing, on the parsing thread.
+     */
+    public interface Listener {
+        /**
+         * Called when a text has been parsed, if no newer text has been submitted.
+         *
+         * @param text  the parsed text
+         * @param tree  the tree of the program, or null if it has a syntax error
+         * @param error the syntax error, or null if the program parsed
+         */
+        void parsed(String text, Tree<Token> tree, SyntaxException error);
+    }
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "Parser");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private IncrementalParser parser = new IncrementalParser(""); // used on the worker only
+    private final Map<String, Result> cache;
+    private volatile String latest = null;
+    private final AtomicInteger parseCount = new AtomicInteger();
+
+    /**
+     * Constructor for a BackgroundParser that caches the given number of results.
+     *
+     * @param cacheSize number of results to be kept
+     * @exception IllegalArgumentException If the cache size is negative
+     */
+    public BackgroundParser(final int cacheSize) {
+        if (cacheSize < 0) throw new IllegalArgumentException();
+        cache = new LinkedHashMap<String, Result>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Result> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Has the given text parsed on the parsing thread, and its result given
+     * to the listener, unless a newer text is submitted first.
+     *
+     * @param text      the program text
+     * @param listener  receiver of the result
+     * @exception IllegalArgumentException If an argument is null
+     */
+    public void submit(final String text, final Listener listener) {
+        if (text == null || listener == null) throw new IllegalArgumentException();
+        latest = text;
+        worker.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!isLatest(text)) return;
+                String key = key(text);
+                Result result = cached(key);
+                if (result == null) {
+                    try {
+                        Tree<Token> tree = parser.update(text, new BooleanSupplier() {
+                            @Override
+                            public boolean getAsBoolean() {
+                                return !isLatest(text);
+                            }
+                        });
+                        result = new Result(tree, parser.getError());
+                        store(key, result);
+                    } catch (CancellationException e) {
+                        return; // a newer text is waiting
+                    } catch (RuntimeException | StackOverflowError e) {
+                        // a bug, or a program nested too deeply: the parser starts afresh next time
+                        parser = new IncrementalParser("");
+                        result = new Result(null, new SyntaxException("Cannot parse the program: " + e));
+                    }
+                    parseCount.incrementAndGet();
+                }
+                if (isLatest(text)) listener.parsed(text, result.tree, result.error);
+            }
+        });
+    }
+
+    /**
+     * Tells whether the given text is the one submitted last. Only a result
+     * for the latest text is up to date.
+     *
+     * @param text  a submitted text
+     * @return True if no other text has been submitted since
+     */
+    public boolean isLatest(String text) {
+        return latest == text;
+    }
+
+    /**
+     * Parses the given text on the calling thread, unless its result is cached.
+     *
+     * @param text  the program text
+     * @return the tree of the program
+     * @exception SyntaxException If the program has a syntax error
+     */
+    public Tree<Token> parse(String text) {
+        String key = key(text);
+        Result result = cached(key);
+        if (result == null) {
+            Parser fullParser = new Parser(text);
+            try {
+                fullParser.isProgram();
+                result = new Result(fullParser.stack.peek(), null);
+            } catch (SyntaxException e) {
+                result = new Result(null, e);
+            }
+            parseCount.incrementAndGet();
+            store(key, result);
+        }
+        if (result.error != null) throw result.error;
+        return result.tree;
+    }
+
+    /**
+     * Returns the number of texts that have been parsed, rather than found in the cache.
+     *
+     * @return number of parsed texts
+     */
+    public int getParseCount() {
+        return parseCount.get();
+    }
+
+    /**
+     * Stops the parsing thread, after the texts that have been submitted.
+     */
+    public void shutdown() {
+        worker.shutdown();
+    }
+
+    /**
+     * Returns the cached result for a key, or null.
+     */
+    private Result cached(String key) {
+        synchronized (cache) {
+            return cache.get(key);
+        }
+    }
+
+    /**
+     * Caches a result.
+     */
+    private void store(String key, Result result) {
+        synchronized (cache) {
+            cache.put(key, result);
+        }
+    }
+
+    /**
+     * Returns the SHA-256 hash of the text, in hexadecimal.
+     */
+    static String key(CharSequence text) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // every Java platform has SHA-256
+        }
+        byte[] buffer = new byte[8192];
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            buffer[length++] = (byte) (ch >>> 8);
+            buffer[length++] = (byte) ch;
+            if (length == buffer.length) {
+                digest.update(buffer, 0, length);
+                length = 0;
+            }
+        }
+        digest.update(buffer, 0, length);
+        StringBuilder builder = new StringBuilder();
+        for (byte b : digest.digest()) {
+            builder.append(Character.forDigit((b >>> 4) & 15, 16)).append(Character.forDigit(b & 15, 16));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * The result of parsing a text.
+     */
+    private static class Result {
+        final Tree<Token> tree;
+        final SyntaxException error;
+
+        Result(Tree<Token> tree, SyntaxException error) {
+            this.tree = tree;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,640 @@
+package parser;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import tokenizer.SymbolTable;
+import tokenizer.Token;
+import tokenizer.TokenType;
+import tree.Tree;
+
+/**
+ * A compact, immutable form of an abstract syntax tree. The nodes are
+ * numbered in preorder, from 0 for the root, and each is described by the
+ * same index into parallel int arrays: its opcode, its first child, its next
+ * sibling, and an operand. A number node's operand indexes a pool of
+ * literals; a name's operand is its id in a table of interned names. So no
+ * object is allocated per node, where a <code>Tree&lt;Token&gt;</code> has a
+ * Tree and an ArrayList (with its array) for each.
+ * <p>
+ * Keywords and symbols of the language get opcodes of their own, so an
+ * interpreter can switch on the opcode rather than compare strings. Any
+ * other token is kept with the generic opcode of its type, and its text.
+ *
+ * @author Joopyo Hong
+ */
+public class FlatTree {
+
+    /** The index of no node: the first child of a leaf, or the next sibling of a last child. */
+    public static final int NONE = -1;
+
+    // generic opcodes, by token type
+    public static final int NAME = 0;
+    public static final int KEYWORD = 1;
+    public static final int NUMBER = 2;
+    public static final int SYMBOL = 3;
+    public static final int EOL = 4;
+    public static final int EOI = 5;
+    public static final int ERROR = 6;
+
+    // the keywords made or accepted by the Parser
+    public static final int PROGRAM = 7;
+    public static final int BLOCK = 8;
+    public static final int LIST = 9;
+    public static final int DEF = 10;
+    public static final int HEADER = 11;
+    public static final int FORWARD = 12;
+    public static final int RIGHT = 13;
+    public static final int LEFT = 14;
+    public static final int FACE = 15;
+    public static final int PENUP = 16;
+    public static final int PENDOWN = 17;
+    public static final int HOME = 18;
+    public static final int COLOR = 19;
+    public static final int JUMP = 20;
+    public static final int SET = 21;
+    public static final int REPEAT = 22;
+    public static final int WHILE = 23;
+    public static final int IF = 24;
+    public static final int DO = 25;
+
+    // the operators
+    public static final int PLUS = 26;
+    public static final int MINUS = 27;
+    public static final int TIMES = 28;
+    public static final int DIVIDE = 29;
+    public static final int LESS = 30;
+    public static final int GREATER = 31;
+    public static final int EQUALS = 32;
+
+    private static final TokenType[] GENERIC_TYPES = {TokenType.NAME, TokenType.KEYWORD,
+            TokenType.NUMBER, TokenType.SYMBOL, TokenType.EOL, TokenType.EOI, TokenType.ERROR};
+
+    /**
+     * The text of each opcode that is not generic, indexed by opcode.
+     */
+    private static final String[] TEXTS = {null, null, null, null, null, null, null,
+            "program", "block", "list", "def", "header", "forward", "right", "left", "face",
+            "penup", "pendown", "home", "color", "jump", "set", "repeat", "while", "if", "do",
+            "+", "-", "*", "/", "<", ">", "="};
+
+    private static final Map<String, Integer> KEYWORD_OPCODES = new HashMap<String, Integer>();
+    private static final Map<String, Integer> SYMBOL_OPCODES = new HashMap<String, Integer>();
+
+    static {
+        for (int opcode = PROGRAM; opcode < PLUS; opcode++) {
+            KEYWORD_OPCODES.put(TEXTS[opcode], opcode);
+        }
+        for (int opcode = PLUS; opcode < TEXTS.length; opcode++) {
+            SYMBOL_OPCODES.put(TEXTS[opcode], opcode);
+        }
+    }
+
+    private final int size;
+    private final int[] opcodes;
+    private final int[] firstChildren;
+    private final int[] nextSiblings;
+    private final int[] operands;     // literal index of a number, name id of a generic token, else 0
+    private final double[] literals;  // the value of each distinct number
+    private final int[] literalTexts; // name id of the text of each number
+    private final SymbolTable names;
+
+    /**
+     * Visits a node according to its kind. Each method is given the tree and
+     * the node, so one visitor can be used with any number of trees.
+     *
+     * @param <R> the type of the result of a visit
+     */
+    public interface Visitor<R> {
+        /**
+         * Visits a node with the opcode of a keyword, from PROGRAM to DO.
+         *
+         * @param tree      the tree of the node
+         * @param node      the node
+         * @param opcode    its opcode
+         * @return the result of the visit
+         */
+        R visitKeyword(FlatTree tree, int node, int opcode);
+
+        /**
+         * Visits a node with the opcode of an operator, from PLUS to EQUALS.
+         *
+         * @param tree      the tree of the node
+         * @param node      the node
+         * @param opcode    its opcode
+         * @return the result of the visit
+         */
+        R visitOperator(FlatTree tree, int node, int opcode);
+
+        /**
+         * Visits a NAME node.
+         *
+         * @param tree  the tree of the node
+         * @param node  the node
+         * @param name  the name
+         * @return the result of the visit
+         */
+        R visitName(FlatTree tree, int node, String name);
+
+        /**
+         * Visits a NUMBER node.
+         *
+         * @param tree  the tree of the node
+         * @param node  the node
+         * @param value the value of the number
+         * @return the result of the visit
+         */
+        R visitNumber(FlatTree tree, int node, double value);
+
+        /**
+         * Visits a node with any other generic opcode.
+         *
+         * @param tree  the tree of the node
+         * @param node  the node
+         * @param token the token of the node
+         * @return the result of the visit
+         */
+        R visitToken(FlatTree tree, int node, Token token);
+    }
+
+    /**
+     * Constructor for a FlatTree of arrays that are already filled in.
+     */
+    private FlatTree(int size, int[] opcodes, int[] firstChildren, int[] nextSiblings, int[] operands,
+            double[] literals, int[] literalTexts, SymbolTable names) {
+        this.size = size;
+        this.opcodes = opcodes;
+        this.firstChildren = firstChildren;
+        this.nextSiblings = nextSiblings;
+        this.operands = operands;
+        this.literals = literals;
+        this.literalTexts = literalTexts;
+        this.names = names;
+    }
+
+    /**
+     * Converts a tree of tokens. The tree is walked without recursion, so it
+     * may be of any depth.
+     *
+     * @param tree  the tree to be converted
+     * @return the flat form of the tree
+     * @exception IllegalArgumentException If the tree or one of its tokens is null
+     */
+    public static FlatTree fromTree(Tree<Token> tree) {
+        if (tree == null) throw new IllegalArgumentException();
+        int capacity = 16;
+        int[] opcodes = new int[capacity];
+        int[] firstChildren = new int[capacity];
+        int[] nextSiblings = new int[capacity];
+        int[] operands = new int[capacity];
+        int[] lastChildren = new int[capacity]; // last child converted so far, of each node
+        double[] literals = new double[16];
+        int[] literalTexts = new int[16];
+        int literalCount = 0;
+        Map<String, Integer> literalIndices = new HashMap<String, Integer>();
+        SymbolTable names = new SymbolTable();
+
+        // nodes waiting to be converted, with their parents, in preorder from the top
+        Tree<Token>[] pending = newArray(16);
+        int[] parents = new int[16];
+        pending[0] = tree;
+        parents[0] = NONE;
+        int depth = 1;
+        int size = 0;
+        while (depth > 0) {
+            depth--;
+            Tree<Token> next = pending[depth];
+            int parent = parents[depth];
+            pending[depth] = null;
+            Token token = next.getValue();
+            if (token == null) throw new IllegalArgumentException();
+
+            if (size == capacity) {
+                capacity *= 2;
+                opcodes = Arrays.copyOf(opcodes, capacity);
+                firstChildren = Arrays.copyOf(firstChildren, capacity);
+                nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+                operands = Arrays.copyOf(operands, capacity);
+                lastChildren = Arrays.copyOf(lastChildren, capacity);
+            }
+            int node = size++;
+            int opcode = opcodeOf(token);
+            opcodes[node] = opcode;
+            firstChildren[node] = NONE;
+            nextSiblings[node] = NONE;
+            lastChildren[node] = NONE;
+            if (opcode == NUMBER) {
+                Integer literal = literalIndices.get(token.getValue());
+                if (literal == null) {
+                    if (literalCount == literals.length) {
+                        literals = Arrays.copyOf(literals, 2 * literalCount);
+                        literalTexts = Arrays.copyOf(literalTexts, 2 * literalCount);
+                    }
+                    literals[literalCount] = token.getNumber();
+                    literalTexts[literalCount] = names.intern(token.getValue());
+                    literal = literalCount++;
+                    literalIndices.put(token.getValue(), literal);
+                }
+                operands[node] = literal;
+            } else if (opcode < PROGRAM) {
+                operands[node] = names.intern(token.getValue());
+            }
+            if (parent != NONE) {
+                if (lastChildren[parent] == NONE) firstChildren[parent] = node;
+                else nextSiblings[lastChildren[parent]] = node;
+                lastChildren[parent] = node;
+            }
+
+            int children = next.numberOfChildren();
+            if (depth + children > pending.length) {
+                pending = Arrays.copyOf(pending, 2 * (depth + children));
+                parents = Arrays.copyOf(parents, pending.length);
+            }
+            for (int i = children - 1; i >= 0; i--) {
+                pending[depth] = next.child(i);
+                parents[depth] = node;
+                depth++;
+            }
+        }
+        return new FlatTree(size, Arrays.copyOf(opcodes, size), Arrays.copyOf(firstChildren, size),
+                Arrays.copyOf(nextSiblings, size), Arrays.copyOf(operands, size),
+                Arrays.copyOf(literals, literalCount), Arrays.copyOf(literalTexts, literalCount), names);
+    }
+
+    /**
+     * Converts this tree back to a tree of tokens, equal to the one it was
+     * made from.
+     *
+     * @return the tree of tokens
+     */
+    public Tree<Token> toTree() {
+        return toTree(0);
+    }
+
+    /**
+     * Converts the subtree rooted at the given node to a tree of tokens.
+     *
+     * @param node  the root of the subtree
+     * @return the tree of tokens
+     * @exception IndexOutOfBoundsException If there is no such node
+     */
+    public Tree<Token> toTree(int node) {
+        checkNode(node);
+        // the subtree takes up the nodes from node to the end of its last descendant
+        int end = node + 1;
+        for (int last = node; last != NONE; last = lastChild(last)) {
+            end = last + 1;
+        }
+        Tree<Token>[] trees = newArray(end - node);
+        for (int i = end - 1; i >= node; i--) {
+            Tree<Token> tree = new Tree<Token>(token(i));
+            for (int child = firstChildren[i]; child != NONE; child = nextSiblings[child]) {
+                tree.addChildUnchecked(trees[child - node]);
+                trees[child - node] = null;
+            }
+            trees[i - node] = tree;
+        }
+        return trees[0];
+    }
+
+    /**
+     * Returns the number of nodes.
+     *
+     * @return number of nodes
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the root node, which is always 0.
+     *
+     * @return the root
+     */
+    public int root() {
+        return 0;
+    }
+
+    /**
+     * Returns the opcode of a node.
+     *
+     * @param node  a node
+     * @return its opcode
+     */
+    public int opcode(int node) {
+        return opcodes[node];
+    }
+
+    /**
+     * Returns the first child of a node.
+     *
+     * @param node  a node
+     * @return its first child, or NONE if it is a leaf
+     */
+    public int firstChild(int node) {
+        return firstChildren[node];
+    }
+
+    /**
+     * Returns the next sibling of a node.
+     *
+     * @param node  a node
+     * @return its next sibling, or NONE if it is the last child or the root
+     */
+    public int nextSibling(int node) {
+        return nextSiblings[node];
+    }
+
+    /**
+     * Returns the child of a node at the given index.
+     *
+     * @param node  a node
+     * @param index index of the child
+     * @return the child
+     * @exception IndexOutOfBoundsException If the node has no such child
+     */
+    public int child(int node, int index) {
+        int child = index < 0 ? NONE : firstChildren[node];
+        for (int i = 0; i < index && child != NONE; i++) {
+            child = nextSiblings[child];
+        }
+        if (child == NONE) throw new IndexOutOfBoundsException("No child " + index + " of node " + node);
+        return child;
+    }
+
+    /**
+     * Returns the number of children of a node.
+     *
+     * @param node  a node
+     * @return number of children
+     */
+    public int numberOfChildren(int node) {
+        int count = 0;
+        for (int child = firstChildren[node]; child != NONE; child = nextSiblings[child]) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the value of a NUMBER node.
+     *
+     * @param node  a node
+     * @return its value, or NaN if it is not a number
+     */
+    public double number(int node) {
+        return opcodes[node] == NUMBER ? literals[operands[node]] : Double.NaN;
+    }
+
+    /**
+     * Returns the text of a node's token: the name of a NAME node, the digits
+     * of a NUMBER node, the keyword or symbol of any other.
+     *
+     * @param node  a node
+     * @return the text of the node
+     */
+    public String text(int node) {
+        int opcode = opcodes[node];
+        if (opcode == NUMBER) return names.name(literalTexts[operands[node]]);
+        if (opcode < PROGRAM) return names.name(operands[node]);
+        return TEXTS[opcode];
+    }
+
+    /**
+     * Returns a token equal to the one a node was made from.
+     *
+     * @param node  a node
+     * @return the token of the node
+     */
+    public Token token(int node) {
+        int opcode = opcodes[node];
+        switch (opcode) {
+        case NAME:
+            return names.token(operands[node]);
+        case NUMBER:
+            return new Token(TokenType.NUMBER, text(node), number(node));
+        case KEYWORD:
+            return Token.keyword(text(node));
+        case SYMBOL:
+            String symbol = text(node);
+            return symbol.length() == 1 ? Token.symbol(symbol.charAt(0)) : new Token(TokenType.SYMBOL, symbol);
+        default:
+            if (opcode < PROGRAM) return new Token(GENERIC_TYPES[opcode], text(node));
+            if (opcode < PLUS) return Token.keyword(TEXTS[opcode]);
+            return Token.symbol(TEXTS[opcode].charAt(0));
+        }
+    }
+
+    /**
+     * Has a node visited by the visitor method for its kind.
+     *
+     * @param node      a node
+     * @param visitor   the visitor
+     * @param <R>       the type of the result of the visit
+     * @return the result of the visit
+     */
+    public <R> R accept(int node, Visitor<R> visitor) {
+        int opcode = opcodes[node];
+        if (opcode >= PLUS) return visitor.visitOperator(this, node, opcode);
+        if (opcode >= PROGRAM) return visitor.visitKeyword(this, node, opcode);
+        if (opcode == NAME) return visitor.visitName(this, node, names.name(operands[node]));
+        if (opcode == NUMBER) return visitor.visitNumber(this, node, literals[operands[node]]);
+        return visitor.visitToken(this, node, token(node));
+    }
+
+    /**
+     * Writes this tree in the binary form read by {@link #read(ByteBuffer)}:
+     * the name table, the literal pool, and then, for each node in preorder,
+     * its opcode, its operand if it has one, and its number of children. All
+     * counts and indices are varints, so most take a byte.
+     *
+     * @param out   destination of the tree
+     * @exception IOException If out throws one
+     */
+    void write(DataOutputStream out) throws IOException {
+        writeVarint(out, names.size());
+        for (int id = 0; id < names.size(); id++) {
+            byte[] bytes = names.name(id).getBytes(StandardCharsets.UTF_8);
+            writeVarint(out, bytes.length);
+            out.write(bytes);
+        }
+        writeVarint(out, literals.length);
+        for (int i = 0; i < literals.length; i++) {
+            writeVarint(out, literalTexts[i]);
+            out.writeDouble(literals[i]);
+        }
+        writeVarint(out, size);
+        for (int node = 0; node < size; node++) {
+            writeVarint(out, opcodes[node]);
+            if (opcodes[node] < PROGRAM) writeVarint(out, operands[node]);
+            writeVarint(out, numberOfChildren(node));
+        }
+    }
+
+    /**
+     * Reads a tree in the binary form written by
+     * {@link #write(DataOutputStream)}, from the position of the buffer on.
+     *
+     * @param in    source of the tree
+     * @return the tree
+     * @exception IllegalArgumentException If the data is not a valid tree
+     * @exception java.nio.BufferUnderflowException If the data ends too soon
+     */
+    static FlatTree read(ByteBuffer in) {
+        SymbolTable names = new SymbolTable();
+        int nameCount = readCount(in, 1);
+        for (int id = 0; id < nameCount; id++) {
+            byte[] bytes = new byte[readCount(in, 1)];
+            in.get(bytes);
+            if (names.intern(new String(bytes, StandardCharsets.UTF_8)) != id) {
+                throw new IllegalArgumentException("Repeated name " + id);
+            }
+        }
+        int literalCount = readCount(in, 9);
+        double[] literals = new double[literalCount];
+        int[] literalTexts = new int[literalCount];
+        for (int i = 0; i < literalCount; i++) {
+            literalTexts[i] = readIndex(in, nameCount);
+            literals[i] = in.getDouble();
+        }
+
+        int size = readCount(in, 2);
+        if (size == 0) throw new IllegalArgumentException("No nodes");
+        int[] opcodes = new int[size];
+        int[] firstChildren = new int[size];
+        int[] nextSiblings = new int[size];
+        int[] operands = new int[size];
+        // the nodes that still have children to come, with the number left and the last one so far
+        int[] parents = new int[16];
+        int[] remaining = new int[16];
+        int[] lastChildren = new int[16];
+        int depth = 0;
+        for (int node = 0; node < size; node++) {
+            int opcode = readIndex(in, TEXTS.length);
+            opcodes[node] = opcode;
+            if (opcode == NUMBER) operands[node] = readIndex(in, literalCount);
+            else if (opcode < PROGRAM) operands[node] = readIndex(in, nameCount);
+            int children = readVarint(in);
+            firstChildren[node] = NONE;
+            nextSiblings[node] = NONE;
+
+            if (node > 0) {
+                if (depth == 0) throw new IllegalArgumentException("Node " + node + " has no parent");
+                int top = depth - 1;
+                if (lastChildren[top] == NONE) firstChildren[parents[top]] = node;
+                else nextSiblings[lastChildren[top]] = node;
+                lastChildren[top] = node;
+                if (--remaining[top] == 0) depth--;
+            }
+            if (children > 0) {
+                if (depth == parents.length) {
+                    parents = Arrays.copyOf(parents, 2 * depth);
+                    remaining = Arrays.copyOf(remaining, 2 * depth);
+                    lastChildren = Arrays.copyOf(lastChildren, 2 * depth);
+                }
+                parents[depth] = node;
+                remaining[depth] = children;
+                lastChildren[depth] = NONE;
+                depth++;
+            }
+        }
+        if (depth > 0) throw new IllegalArgumentException("Missing nodes");
+        return new FlatTree(size, opcodes, firstChildren, nextSiblings, operands, literals, literalTexts, names);
+    }
+
+    /**
+     * Returns the opcode for a token: its own if it is one of the language's
+     * keywords or operators, otherwise the generic opcode of its type.
+     */
+    private static int opcodeOf(Token token) {
+        Integer opcode = null;
+        if (token.getType() == TokenType.KEYWORD) opcode = KEYWORD_OPCODES.get(token.getValue());
+        else if (token.getType() == TokenType.SYMBOL) opcode = SYMBOL_OPCODES.get(token.getValue());
+        if (opcode != null) return opcode;
+        for (int i = 0; i < GENERIC_TYPES.length; i++) {
+            if (GENERIC_TYPES[i] == token.getType()) return i;
+        }
+        throw new IllegalArgumentException("Unknown token type " + token.getType());
+    }
+
+    /**
+     * Returns the last child of a node, or NONE.
+     */
+    private int lastChild(int node) {
+        int last = NONE;
+        for (int child = firstChildren[node]; child != NONE; child = nextSiblings[child]) {
+            last = child;
+        }
+        return last;
+    }
+
+    /**
+     * Checks that a node is in this tree.
+     */
+    private void checkNode(int node) {
+        if (node < 0 || node >= size) throw new IndexOutOfBoundsException("No node " + node);
+    }
+
+    /**
+     * Writes a non-negative int in 7-bit groups, low group first, with the
+     * high bit of each byte set if more follow.
+     */
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Reads a non-negative int written by writeVarint().
+     */
+    private static int readVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                if (value < 0) break;
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Bad varint");
+    }
+
+    /**
+     * Reads the number of the elements that follow, each of which takes at
+     * least the given number of bytes, so that a corrupt count is found
+     * before an array is allocated for it.
+     */
+    private static int readCount(ByteBuffer in, int minimumBytes) {
+        int count = readVarint(in);
+        if (count > in.remaining() / minimumBytes) {
+            throw new IllegalArgumentException("Count " + count + " exceeds the data");
+        }
+        return count;
+    }
+
+    /**
+     * Reads a varint that must be less than limit.
+     */
+    private static int readIndex(ByteBuffer in, int limit) {
+        int index = readVarint(in);
+        if (index >= limit) throw new IllegalArgumentException("Index " + index + " out of range");
+        return index;
+    }
+
+    /**
+     * Creates an array of Trees.
+     */
+    @SuppressWarnings("unchecked")
+    private static Tree<Token>[] newArray(int length) {
+        return (Tree<Token>[]) new Tree<?>[length];
+    }
+}
@@ -0,0 +1,350 @@
+package parser;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+import tokenizer.IncrementalTokenizer;
+import tokenizer.Token;
+import tokenizer.TokenStream;
+import tokenizer.Tokenizer;
+import tree.Tree;
+
+/**
+ * Keeps the abstract syntax tree of a program that is being edited up to
+ * date. The top-level commands and procedures of the program are kept with
+ * the range of tokens each was parsed from. After an edit, only those that
+ * hold tokens scanned again, and the one before them (which may gain newlines
+ * or an else part), are parsed again; their new trees are put between the
+ * unchanged ones under a new program, block and list. If the new trees do not
+ * fit there, as when a procedure is followed by a command, the whole program
+ * is parsed again.
+ * <p>
+ * The trees of unchanged commands and procedures are shared, never modified,
+ * so a tree returned before an edit stays intact while it is interpreted.
+ * <p>
+ * An update can be cancelled between two commands or procedures, once its
+ * text is no longer wanted; the next update then parses its text in full.
+ *
+ * @author Joopyo Hong
+ */
+public class IncrementalParser {
+    private final IncrementalTokenizer tokenizer;
+    private Tree<Token>[] items = newArray(0); // the top-level commands, then the procedures
+    private int[] starts = {0};                // index of the first token of each item, then of the end
+    private int commands = 0;                  // number of top-level commands
+    private Tree<Token> tree = null;
+    private SyntaxException error = null;
+    private int reparsed = 0;
+    private BooleanSupplier cancelled = NEVER; // asked between items, during an update
+
+    private static final BooleanSupplier NEVER = new BooleanSupplier() {
+        @Override
+        public boolean getAsBoolean() {
+            return false;
+        }
+    };
+
+    /**
+     * Constructor for an IncrementalParser, which parses all of the given text.
+     *
+     * @param text  the program text
+     * @exception IllegalArgumentException If the text is null
+     */
+    public IncrementalParser(CharSequence text) {
+        if (text == null) throw new IllegalArgumentException();
+        tokenizer = Parser.tokenizeIncrementally(text);
+        parseAll();
+    }
+
+    /**
+     * Returns the tree of the program as of the last edit.
+     *
+     * @return the program tree, or null if the program has a syntax error
+     */
+    public Tree<Token> getTree() {
+        return tree;
+    }
+
+    /**
+     * Returns the syntax error in the program as of the last edit.
+     *
+     * @return the syntax error, or null if the program parsed
+     */
+    public SyntaxException getError() {
+        return error;
+    }
+
+    /**
+     * Returns the tokens of the program as of the last edit.
+     *
+     * @return the current tokens
+     */
+    public TokenStream getTokens() {
+        return tokenizer.getTokens();
+    }
+
+    /**
+     * Returns the number of top-level commands and procedures that were parsed
+     * by the last edit; all of them if the whole program was parsed again.
+     *
+     * @return number of parsed commands and procedures
+     */
+    public int getReparsedCount() {
+        return reparsed;
+    }
+
+    /**
+     * Updates the tree after removedLength characters at the given offset
+     * have been replaced by insertedLength characters, as reported by a
+     * <code>DocumentEvent</code>.
+     *
+     * @param text              the whole text, after the edit
+     * @param offset            index of the first changed character
+     * @param removedLength     number of characters removed at the offset
+     * @param insertedLength    number of characters inserted at the offset
+     * @return the tree of the edited program, or null if it has a syntax error
+     * @exception IllegalArgumentException If the edit does not fit the text
+     */
+    public Tree<Token> edit(CharSequence text, int offset, int removedLength, int insertedLength) {
+        TokenStream tokens = tokenizer.edit(text, offset, removedLength, insertedLength);
+        if (tree == null) {
+            parseAll();
+            return tree;
+        }
+        int first = tokenizer.getFirstRelexed();
+        int replaced = tokenizer.getReplacedCount();
+        int shift = tokenizer.getRelexedCount() - replaced;
+        int lo = itemAt(first - 1);
+        int hi = itemAt(Math.max(first + replaced - 1, first));
+
+        Section section;
+        try {
+            section = parse(tokens, starts[lo], starts[hi + 1] + shift);
+        } catch (SyntaxException e) {
+            section = null;
+        }
+        int count = section == null ? 0 : section.items.length;
+        int after = items.length - hi - 1;
+        int newCommands = Math.min(lo, commands) + (section == null ? 0 : section.commands)
+                + Math.max(commands - hi - 1, 0);
+        if (section == null || newCommands == 0
+                || (section.commands > 0 && lo > commands)
+                || (section.commands < count && hi + 1 < commands)) {
+            parseAll();
+            return tree;
+        }
+
+        Tree<Token>[] newItems = newArray(lo + count + after);
+        System.arraycopy(items, 0, newItems, 0, lo);
+        System.arraycopy(section.items, 0, newItems, lo, count);
+        System.arraycopy(items, hi + 1, newItems, lo + count, after);
+        int[] newStarts = new int[newItems.length + 1];
+        System.arraycopy(starts, 0, newStarts, 0, lo);
+        System.arraycopy(section.starts, 0, newStarts, lo, count);
+        for (int i = 0; i <= after; i++) {
+            newStarts[lo + count + i] = starts[hi + 1 + i] + shift;
+        }
+        items = newItems;
+        starts = newStarts;
+        commands = newCommands;
+        reparsed = count;
+        build();
+        return tree;
+    }
+
+    /**
+     * Updates the tree to a new version of the text, of which only the
+     * characters between the longest common prefix and the longest common
+     * suffix with the previous version are taken as edited.
+     *
+     * @param text  the whole new text
+     * @return the tree of the new program, or null if it has a syntax error
+     * @exception IllegalArgumentException If the text is null
+     */
+    public Tree<Token> update(CharSequence text) {
+        if (text == null) throw new IllegalArgumentException();
+        CharSequence old = tokenizer.getTokens().getSource();
+        int common = Math.min(old.length(), text.length());
+        int prefix = 0;
+        while (prefix < common && old.charAt(prefix) == text.charAt(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < common - prefix
+                && old.charAt(old.length() - 1 - suffix) == text.charAt(text.length() - 1 - suffix)) {
+            suffix++;
+        }
+        return edit(text, prefix, old.length() - prefix - suffix, text.length() - prefix - suffix);
+    }
+
+    /**
+     * Updates the tree to a new version of the text, as
+     * {@link #update(CharSequence)} does, unless the update is cancelled
+     * first. The given condition is checked before each top-level command or
+     * procedure is parsed; once it holds, parsing stops, and the tree and the
+     * error are both null until the next update, which parses all of its text.
+     *
+     * @param text      the whole new text
+     * @param cancelled true once the new text is no longer wanted
+     * @return the tree of the new program, or null if it has a syntax error
+     * @exception IllegalArgumentException If the text is null
+     * @exception CancellationException If the update was cancelled
+     */
+    public Tree<Token> update(CharSequence text, BooleanSupplier cancelled) {
+        this.cancelled = cancelled;
+        try {
+            return update(text);
+        } catch (CancellationException e) {
+            items = newArray(0);
+            starts = new int[] {0};
+            commands = 0;
+            reparsed = 0;
+            tree = null;
+            error = null;
+            throw e;
+        } finally {
+            this.cancelled = NEVER;
+        }
+    }
+
+    /**
+     * Parses all of the tokens, setting either the tree or the error.
+     */
+    private void parseAll() {
+        TokenStream tokens = tokenizer.getTokens();
+        try {
+            Section section = parse(tokens, 0, tokens.size());
+            if (section.commands == 0) {
+                throw syntaxError("No <command> at the beginning of <program>", tokens.getSource(), 0);
+            }
+            items = section.items;
+            starts = section.starts;
+            commands = section.commands;
+            reparsed = items.length;
+            build();
+        } catch (SyntaxException e) {
+            items = newArray(0);
+            starts = new int[] {0};
+            commands = 0;
+            reparsed = 0;
+            tree = null;
+            error = e;
+        }
+    }
+
+    /**
+     * Parses commands, then procedures, from the tokens with indices from
+     * (inclusive) to to (exclusive), which must all be used up. Stops with a
+     * <code>CancellationException</code> once the update is cancelled.
+     */
+    private Section parse(TokenStream tokens, int from, int to) {
+        Tokenizer tokenizer = new Tokenizer(tokens, from, to);
+        Parser parser = new Parser(tokenizer);
+        int[] starts = new int[16];
+        starts[0] = from;
+        int count = 0;
+        checkCancelled();
+        while (parser.isCommand()) {
+            starts = put(starts, ++count, tokenizer.nextIndex());
+            checkCancelled();
+        }
+        int commands = count;
+        while (parser.isProcedure()) {
+            starts = put(starts, ++count, tokenizer.nextIndex());
+            checkCancelled();
+        }
+        if (tokenizer.hasNext()) {
+            throw syntaxError("No <command> or <procedure> at the end of <program>",
+                    tokens.getSource(), tokenizer.nextStart());
+        }
+
+        Tree<Token>[] items = newArray(count);
+        for (int i = 0; i < count; i++) {
+            items[i] = parser.stack.get(i);
+        }
+        return new Section(items, Arrays.copyOf(starts, count + 1), commands);
+    }
+
+    /**
+     * Throws a <code>CancellationException</code> if the update has been
+     * cancelled.
+     */
+    private void checkCancelled() {
+        if (cancelled.getAsBoolean()) throw new CancellationException();
+    }
+
+    /**
+     * Makes a <code>SyntaxException</code> at the given offset in the
+     * source, with its line and column, as the Parser does.
+     */
+    private static SyntaxException syntaxError(String message, CharSequence source, int position) {
+        int line = 1;
+        int lineStart = 0;
+        for (int i = 0; i < position; i++) {
+            if (source.charAt(i) == '\n') {
+                line++;
+                lineStart = i + 1;
+            }
+        }
+        return new SyntaxException(message, line, position - lineStart + 1);
+    }
+
+    /**
+     * Makes a new program tree of the current commands and procedures.
+     */
+    @SuppressWarnings("unchecked")
+    private void build() {
+        Tree<Token> block = new Tree<Token>(Token.keyword("block"), Arrays.copyOfRange(items, 0, commands));
+        Tree<Token> list = new Tree<Token>(Token.keyword("list"), Arrays.copyOfRange(items, commands, items.length));
+        tree = new Tree<Token>(Token.keyword("program"), block, list);
+        error = null;
+    }
+
+    /**
+     * Returns the index of the item that holds the token with the given
+     * index, or the nearest item if no item does.
+     */
+    private int itemAt(int token) {
+        int low = 0;
+        int high = items.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (starts[middle] <= token) low = middle;
+            else high = middle - 1;
+        }
+        return low;
+    }
+
+    /**
+     * Stores a value in an array, which is grown if it is too short.
+     */
+    private static int[] put(int[] array, int index, int value) {
+        if (index == array.length) array = Arrays.copyOf(array, 2 * index);
+        array[index] = value;
+        return array;
+    }
+
+    /**
+     * Creates an array of Trees.
+     */
+    @SuppressWarnings("unchecked")
+    private static Tree<Token>[] newArray(int length) {
+        return (Tree<Token>[]) new Tree<?>[length];
+    }
+
+    /**
+     * The top-level commands and procedures parsed from a range of tokens.
+     */
+    private static class Section {
+        final Tree<Token>[] items;
+        final int[] starts;
+        final int commands;
+
+        Section(Tree<Token>[] items, int[] starts, int commands) {
+            this.items = items;
+            this.starts = starts;
+            this.commands = commands;
+        }
+    }
+}
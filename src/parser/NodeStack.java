@@ -0,0 +1,202 @@
+package parser;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import tree.Tree;
+
+/**
+ * The stack of Trees a Parser builds its result on. It is an unsynchronized
+ * array, and it has operations that turn the top entries into the children
+ * of a root in one step, without creating any temporary arrays.
+ * <p>
+ * The Trees on the stack must be distinct and must not share nodes, as is
+ * the case for a parser that pushes a new Tree for every token. Then no
+ * reduction can make a Tree its own descendant, so children are attached
+ * with {@link Tree#addChildUnchecked(Tree)}, in constant time each.
+ *
+ * @param <V> type of the values of the Trees
+ * @author Joopyo Hong
+ */
+public class NodeStack<V> {
+    private Tree<V>[] items = newArray(64);
+    private int size = 0;
+
+    /**
+     * Pushes a Tree onto the stack.
+     *
+     * @param tree the Tree to be pushed
+     */
+    public void push(Tree<V> tree) {
+        if (size == items.length) items = Arrays.copyOf(items, 2 * size);
+        items[size++] = tree;
+    }
+
+    /**
+     * Removes and returns the Tree on top of the stack.
+     *
+     * @return the top Tree
+     * @exception NoSuchElementException If the stack is empty
+     */
+    public Tree<V> pop() {
+        if (size == 0) throw new NoSuchElementException("The stack is empty");
+        Tree<V> tree = items[--size];
+        items[size] = null;
+        return tree;
+    }
+
+    /**
+     * Returns the Tree on top of the stack, without removing it.
+     *
+     * @return the top Tree
+     * @exception NoSuchElementException If the stack is empty
+     */
+    public Tree<V> peek() {
+        if (size == 0) throw new NoSuchElementException("The stack is empty");
+        return items[size - 1];
+    }
+
+    /**
+     * Returns the Tree at the given index, counting from the bottom of the stack.
+     *
+     * @param index index of the Tree; the bottom Tree has index 0
+     * @return the Tree at the index
+     * @exception IndexOutOfBoundsException If there is no such Tree
+     */
+    public Tree<V> get(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index: " + index);
+        return items[index];
+    }
+
+    /**
+     * Returns the number of Trees on the stack.
+     *
+     * @return the number of Trees
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Tells whether the stack is empty.
+     *
+     * @return True if there are no Trees on the stack
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all Trees, keeping the allocated space.
+     */
+    public void clear() {
+        Arrays.fill(items, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Makes the top n Trees the last children of the Tree below them, in the
+     * order they were pushed, and pops them.
+     *
+     * @param n number of children
+     */
+    public void reduce(int n) {
+        check(n + 1);
+        Tree<V> root = items[size - n - 1];
+        for (int i = size - n; i < size; i++) {
+            root.addChildUnchecked(items[i]);
+            items[i] = null;
+        }
+        size -= n;
+    }
+
+    /**
+     * Replaces the top n Trees by the given root, after making them its last
+     * children in the order they were pushed.
+     *
+     * @param root  the new top Tree
+     * @param n     number of children
+     */
+    public void reduceInto(Tree<V> root, int n) {
+        check(n);
+        for (int i = size - n; i < size; i++) {
+            root.addChildUnchecked(items[i]);
+            items[i] = null;
+        }
+        size -= n;
+        push(root);
+    }
+
+    /**
+     * Replaces the top three Trees, a left operand, an operator and a right
+     * operand, by the operator with the two operands as its children.
+     */
+    public void reduceBinary() {
+        check(3);
+        Tree<V> operator = items[size - 2];
+        operator.addChildUnchecked(items[size - 3]);
+        operator.addChildUnchecked(items[size - 1]);
+        items[size - 3] = operator;
+        items[size - 2] = null;
+        items[size - 1] = null;
+        size -= 2;
+    }
+
+    /**
+     * Tells whether the other object is a NodeStack with equal Trees, bottom to top.
+     *
+     * @param o the reference object with which to compare
+     * @return True if the stacks hold equal Trees
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof NodeStack)) return false;
+        NodeStack<?> other = (NodeStack<?>) o;
+        if (size != other.size) return false;
+        for (int i = 0; i < size; i++) {
+            if (!items[i].equals(other.items[i])) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns a hash code that is consistent with equals.
+     *
+     * @return the hash code of this stack
+     */
+    @Override
+    public int hashCode() {
+        return size;
+    }
+
+    /**
+     * Returns the Trees, bottom to top, in the form "[tree, tree]".
+     *
+     * @return the string representation of this stack
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) builder.append(", ");
+            builder.append(items[i]);
+        }
+        return builder.append(']').toString();
+    }
+
+    /**
+     * Makes sure there are at least n Trees on the stack.
+     */
+    private void check(int n) {
+        if (n > size) throw new NoSuchElementException("The stack has fewer than " + n + " Trees");
+    }
+
+    /**
+     * Creates an array of Trees.
+     */
+    @SuppressWarnings("unchecked")
+    private static <V> Tree<V>[] newArray(int length) {
+        return (Tree<V>[]) new Tree<?>[length];
+    }
+}
@@ -1,9 +1,15 @@
 package parser;
 
+import java.io.File;
 import java.io.IOException;
-import java.io.StringReader;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
+import tokenizer.IncrementalTokenizer;
+import tokenizer.KeywordSet;
+import tokenizer.MappedSource;
+import tokenizer.TokenStream;
 import tokenizer.Tokenizer;
 import tokenizer.TokenType;
 import tokenizer.Token;
@@ -16,13 +22,17 @@ import tree.Tree;
 public class Parser {
     private Tokenizer tokenizer = null; 
     private static boolean debug = false;
-    private static Set<String> keywords = new HashSet<String>();
     
     private static final String[] keywordList = {"penup", "pendown","home", "jump",
             "set", "repeat", "while", "if", "else", "do", "forward", "right", "left",
             "face", "red", "orange", "yellow", "green", "cyan", "blue", "purple",
             "magenta", "pink", "olive", "black", "gray", "white", "brown", "tan", "color", "def"};
     
+    /**
+     * The keywords of the Logo language; immutable, so shared by all parsers and threads.
+     */
+    private static final Set<String> keywords = new KeywordSet(keywordList);
+    
     private static final List<String> colorList = Arrays.asList("red", "orange", "yellow", "green",
             "cyan", "blue", "purple", "magenta", "pink", "olive", "black", "gray", "white", "brown", "tan");
     
@@ -30,23 +40,219 @@ public class Parser {
             {0, 255, 255}, {0, 64, 255}, {128, 0, 255}, {255, 0, 255}, {250, 175, 190}, {128, 128, 0},
             {0, 0, 0}, {128, 128, 128}, {255, 255, 255}, {128, 64, 0}, {210, 180, 140}};
     
+    // parts of the expression grammar, for parseExpression()
+    private static final int EXPRESSION = 0;
+    private static final int TERM = 1;
+    private static final int UNSIGNED_TERM = 2;
+    private static final int FACTOR = 3;
+    private static final int UNSIGNED_FACTOR = 4;
+    
+    // what a frame of parseExpression() does with the tree parsed last
+    private static final int AFTER_TERM = 0;                   // <expression>, before an <add_operator>
+    private static final int AFTER_ADDEND = 1;                 // <expression>, after <add_operator> <unsignedTerm>
+    private static final int AFTER_FACTOR = 2;                 // <term>, before a <multiply_operator>
+    private static final int AFTER_MULTIPLICAND = 3;           // <term>, after <multiply_operator> <factor>
+    private static final int AFTER_UNSIGNED_FACTOR = 4;        // <unsignedTerm>, before a <multiply_operator>
+    private static final int AFTER_UNSIGNED_MULTIPLICAND = 5;  // <unsignedTerm>, after <multiply_operator> <unsignedFactor>
+    private static final int AFTER_SIGN = 6;                   // <factor>, after its <add_operator>
+    private static final int AFTER_PARENTHESIZED = 7;          // <unsignedFactor>, after "(" <expression>
+    
+    // the error for a frame whose tree is missing, or null if the frame's production is optional
+    private static final String[] MISSING_OPERAND = {null, "Error in expression after '+' or '-'",
+            null, "No term after '*' or '/'", null, "No term after '*' or '/'",
+            "Unary sign not followed by a factor.", "Error in parenthesized expression"};
+    
+    // number of tokens of procedures that parseProgram() parses as one task
+    private static final int PROCEDURE_BATCH = 1 << 14;
+    
+    private static final Token[][] colorTokens = new Token[colorCode.length][3];
+    private static final Map<String, Integer> colorIndices = new HashMap<String, Integer>();
+    
+    static {
+        for (int i = 0; i < colorCode.length; i++) {
+            colorIndices.put(colorList.get(i), i);
+            for (int j = 0; j < 3; j++) {
+                colorTokens[i][j] = new Token(TokenType.NUMBER, "" + colorCode[i][j], colorCode[i][j]);
+            }
+        }
+    }
+    
     
     /**
      * The stack used for holding Trees as they are created.
      */
-    public Stack<Tree<Token>> stack = new Stack<Tree<Token>>();
+    public NodeStack<Token> stack = new NodeStack<Token>();
+    
+    private int[] frames = new int[64]; // for parseExpression()
+    
+    private boolean recovering = false;
+    private List<SyntaxException> errors = new ArrayList<SyntaxException>();
+    
+    // how far line numbers have been counted, for syntaxError()
+    private int counted = 0;
+    private int line = 1;
+    private int lineStart = 0;
 
     /**
      * Constructs a Parser for the given string.
      * @param text The string to be parsed.
      */
     public Parser(String text) { 
-             
-        for (String s: keywordList) {
-            keywords.add(s);
+        this((CharSequence) text);
+    }
+    
+    /**
+     * Constructs a Parser for the program in the given file. The file is
+     * memory-mapped and tokenized in place, rather than read into a String.
+     * @param file The file to be parsed.
+     * @throws IOException  If the file cannot be read
+     */
+    public Parser(File file) throws IOException {
+        this(MappedSource.map(file));
+    }
+    
+    /**
+     * Constructs a Parser for the given characters.
+     * @param text The characters to be parsed.
+     */
+    Parser(CharSequence text) {
+        tokenizer = new Tokenizer(text, 0, text.length(), keywords);
+    }
+    
+    /**
+     * Constructs a Parser for the given, already tokenized, program.
+     * @param tokens The tokens to be parsed, as made by {@link #tokenize(CharSequence)}.
+     */
+    public Parser(TokenStream tokens) {
+        tokenizer = new Tokenizer(tokens);
+    }
+
+    /**
+     * Constructs a Parser for the tokens of the given Tokenizer.
+     * @param tokenizer The Tokenizer to take the tokens from.
+     */
+    Parser(Tokenizer tokenizer) {
+        this.tokenizer = tokenizer;
+    }
+    
+    /**
+     * Tokenizes the given program text, using the keywords of the Logo language.
+     * 
+     * @param text The program text.
+     * @return The tokens of the program.
+     */
+    public static TokenStream tokenize(CharSequence text) {
+        return TokenStream.tokenize(text, keywords);
+    }
+    
+    /**
+     * Tokenizes the given program text, using the keywords of the Logo language,
+     * so that it can be re-tokenized piecemeal as it is edited.
+     * 
+     * @param text The program text.
+     * @return The tokenizer keeping the tokens of the program.
+     */
+    public static IncrementalTokenizer tokenizeIncrementally(CharSequence text) {
+        return new IncrementalTokenizer(text, keywords);
+    }
+    
+    /**
+     * Tokenizes the given program text, using the keywords of the Logo language.
+     * Programs of at least {@link TokenStream#PARALLEL_THRESHOLD} characters are
+     * tokenized in parallel on the given pool.
+     * 
+     * @param text The program text.
+     * @param pool The pool to tokenize in.
+     * @return The tokens of the program.
+     */
+    public static TokenStream tokenize(CharSequence text, ForkJoinPool pool) {
+        return TokenStream.tokenize(text, keywords, pool);
+    }
+    
+    /**
+     * Parses a whole &lt;program&gt;, as {@link #isProgram()} does, with its
+     * procedures parsed in parallel on the given pool. The commands are parsed
+     * first, on the calling thread. The tokens after them are split before
+     * every "def", and the procedures are parsed in batches, each by a Parser
+     * of its own, then put in the list in the order of the source. If any
+     * procedure does not parse, the whole program is parsed again on the
+     * calling thread, so the <code>SyntaxException</code> thrown is always the
+     * one isProgram() throws.
+     * 
+     * @param tokens The tokens of the program, as made by {@link #tokenize(CharSequence)}.
+     * @param pool The pool to parse the procedures in.
+     * @return The tree of the program.
+     * @throws SyntaxException  If syntax error is detected
+     */
+    public static Tree<Token> parseProgram(TokenStream tokens, ForkJoinPool pool) {
+        Parser parser = new Parser(tokens);
+        int numOfCommands = 0;
+        while (parser.isCommand()) {
+            numOfCommands++;
         }
-        
-        tokenizer = new Tokenizer(new StringReader(text), keywords);
+        int start = parser.tokenizer.nextIndex();
+        int[] bounds = procedureBounds(tokens, start);
+        if (numOfCommands > 0 && bounds != null) {
+            // the parsers only read the symbol table, once every name has its token
+            for (int id = 0; id < tokens.getSymbols().size(); id++) {
+                tokens.getSymbols().token(id);
+            }
+            Tree<Token>[] procedures = newTreeArray(bounds.length - 1);
+            ProcedureTask task = new ProcedureTask(tokens, bounds, procedures, 0, procedures.length);
+            pool.invoke(task);
+            if (!task.failed()) {
+                parser.makeRootDesignatedTree("block", numOfCommands);
+                Tree<Token> list = new Tree<Token>(Token.keyword("list"));
+                for (Tree<Token> procedure : procedures) {
+                    list.addChildUnchecked(procedure);
+                }
+                parser.stack.push(list);
+                parser.stack.reduceInto(new Tree<Token>(Token.keyword("program")), 2);
+                return parser.stack.pop();
+            }
+        }
+        parser = new Parser(tokens);
+        parser.isProgram();
+        return parser.stack.pop();
+    }
+    
+    /**
+     * Makes this Parser ready to parse the given text, as if it had just been
+     * constructed for it. The stack and the tokenizer are reused, so a single
+     * Parser can parse many programs without reallocating them.
+     * @param text The characters to be parsed.
+     */
+    public void reset(CharSequence text) {
+        tokenizer.reset(text, 0, text.length());
+        stack.clear();
+        errors.clear();
+        counted = 0;
+        line = 1;
+        lineStart = 0;
+    }
+    
+    /**
+     * Turns error recovery on or off. With recovery on, a syntax error does
+     * not end parsing. It is added to the errors, the rest of the command or
+     * procedure it is in is skipped, and parsing goes on. The skipped part ends
+     * at the end of a line that leaves no bracket open, or before a "}" that
+     * closes the block, or before a "def". So isProgram() always succeeds, and
+     * the program it leaves on the stack has all the commands and procedures
+     * without errors.
+     * @param recovering Whether to recover from syntax errors.
+     */
+    public void setRecovering(boolean recovering) {
+        this.recovering = recovering;
+    }
+    
+    /**
+     * Returns the syntax errors found with recovery on, in the order of their
+     * places in the program. Their messages do not include the stack.
+     * 
+     * @return The syntax errors found so far.
+     */
+    public List<SyntaxException> getErrors() {
+        return errors;
     }
     
     /**
@@ -68,20 +274,29 @@ public class Parser {
      * @throws SyntaxException  If syntax error is detected
      */
     public boolean isProgram() {
-        if (!isCommand()) error("No <command> at the beginning of <program>");
-        int numOfCommands = 1;
-        while (isCommand()) {
-            numOfCommands++;
+        return isProgram(null);
+    }
+    
+    /**
+     * Tries to parse a &lt;program&gt;, as {@link #isProgram()} does, telling
+     * the listener of every top-level command and procedure as soon as it has
+     * been parsed, so that the program can be run while the rest is parsed.
+     * @param listener The receiver of the commands and procedures, or <code>null</code>.
+     * @return <code>true</code> if a &lt;program&gt; is recognized.
+     * @throws SyntaxException  If syntax error is detected
+     */
+    public boolean isProgram(ProgramListener listener) {
+        int depth = stack.size();
+        if (!isTopLevelCommand(listener)) report("No <command> at the beginning of <program>");
+        while (isTopLevelCommand(listener)) {
         }
-        makeRootDesignatedTree("block", numOfCommands);
+        makeRootDesignatedTree("block", stack.size() - depth);
         
-        int numOfProcedures = 0;
-        while (isProcedure()) {
-            numOfProcedures++;
+        depth = stack.size();
+        while (isTopLevelProcedure(listener)) {
         }
-        makeRootDesignatedTree("list", numOfProcedures);
-        stack.push(new Tree<Token>(new Token(TokenType.KEYWORD, "program")));
-        makeTree(1, 3, 2);
+        makeRootDesignatedTree("list", stack.size() - depth);
+        stack.reduceInto(new Tree<Token>(Token.keyword("program")), 2);
         if (tokenizer.hasNext()) error("No <command> or <procedure> at the end of <program>");
         
         return true;
@@ -103,11 +318,10 @@ public class Parser {
             numOfVar++;
         }
         makeRootDesignatedTree("list", numOfVar);
-        stack.push(new Tree<Token>(new Token(TokenType.KEYWORD, "header")));
-        makeTree(1, 3, 2);    
+        stack.reduceInto(new Tree<Token>(Token.keyword("header")), 2);
         
         if (!isBlock()) error("No <block> at the end of <procedure>");
-        makeTree(3, 2, 1);
+        stack.reduce(2);
                 
         return true;
     }
@@ -126,23 +340,41 @@ public class Parser {
      * @throws IOException  If an I/O error occurs  If an I/O error occurs
      */ 
     public boolean isCommand() {
+        // every command starts with a keyword, which selects the only production to try
+        Token next = tokenizer.peek(0);
+        if (next == null || next.getType() != TokenType.KEYWORD) return false;
         
-        if (isMove()) {
+        switch (next.getValue()) {
+        case "forward": case "right": case "left": case "face":
+            nextTokenMatches(TokenType.KEYWORD);
             if (!isExpression()) error("No <expression> following <move>");
-            makeTree(2,1);
+            stack.reduce(1);
             if (!isEol()) error("No <eol> following <move> - <expression>");
             return true;
-        }
-        
-        if (isColor()) {
+        case "penup":
+            return isPenup();
+        case "pendown":
+            return isPendown();
+        case "home":
+            return isHome();
+        case "jump":
+            return isJump();
+        case "set":
+            return isSet();
+        case "repeat":
+            return isRepeat();
+        case "while":
+            return isWhile();
+        case "if":
+            return isIf();
+        case "do":
+            return isDo();
+        default:
+            // "color" and the names of colors
+            if (!isColor()) return false;
             if (!isEol()) error("No <eol> following <color>");
             return true;
         }
-        
-        if (isPenup() || isPendown() || isHome() || isJump() || isSet() ||
-                isRepeat() || isWhile() || isIf() || isDo()) return true;
-        
-        return false;
     }
     
     /**
@@ -152,8 +384,15 @@ public class Parser {
      * @throws IOException  If an I/O error occurs  If an I/O error occurs
      */
     public boolean isMove() {
-        return isKeyword("forward") || isKeyword("right") ||
-                isKeyword("left") || isKeyword("face");
+        Token next = tokenizer.peek(0);
+        if (next == null || next.getType() != TokenType.KEYWORD) return false;
+        
+        switch (next.getValue()) {
+        case "forward": case "right": case "left": case "face":
+            return nextTokenMatches(TokenType.KEYWORD);
+        default:
+            return false;
+        }
     }
     
     /**
@@ -168,19 +407,19 @@ public class Parser {
      * @throws SyntaxException  If syntax error is detected
      */ 
     public boolean isColor() {
-                
-        for (String s: colorList) {
-            if (isKeyword(s)) {
-                int colorIndex = colorList.indexOf(s);
-                Token root = new Token(TokenType.KEYWORD, "color");
-                Token child1 = new Token(TokenType.NUMBER, "" + colorCode[colorIndex][0]);
-                Token child2 = new Token(TokenType.NUMBER, "" + colorCode[colorIndex][1]);
-                Token child3 = new Token(TokenType.NUMBER, "" + colorCode[colorIndex][2]);
-                stack.pop();
-                stack.push(new Tree<Token>(root, new Tree<Token>(child1), new Tree<Token>(child2), new Tree<Token>(child3)));
-                
-                return true;
-            }
+        Token next = tokenizer.peek(0);
+        if (next == null || next.getType() != TokenType.KEYWORD) return false;
+        
+        Integer colorIndex = colorIndices.get(next.getValue());
+        if (colorIndex != null) {
+            tokenizer.next();
+            Token root = Token.keyword("color");
+            Token child1 = colorTokens[colorIndex][0];
+            Token child2 = colorTokens[colorIndex][1];
+            Token child3 = colorTokens[colorIndex][2];
+            stack.push(new Tree<Token>(root, new Tree<Token>(child1), new Tree<Token>(child2), new Tree<Token>(child3)));
+            
+            return true;
         }
         
         if (isKeyword("color")) {
@@ -188,7 +427,7 @@ public class Parser {
             if (!isExpression()) error("No <expression> following 'color' - <expression>");
             if (!isExpression()) error("No <expression> following 'color' - <expression> - <expression>");
             
-            makeTree(4, 3, 2, 1);
+            stack.reduce(3);
             
             return true;
         }
@@ -209,10 +448,10 @@ public class Parser {
         stack.pop();
         if (!(isEol())) error("No <eol> after the opening bracket");
         
-        int numOfCommands = 0;
-        while (isCommand()) {
-            numOfCommands++;
+        int depth = stack.size();
+        while (isCommandOrSkip(true)) {
         }
+        int numOfCommands = stack.size() - depth;
         if (!(isSymbol("}"))) error("Unclosed bracketted command");
         stack.pop();
         if (!(isEol())) error("No <eol> after the closing bracket");
@@ -234,7 +473,7 @@ public class Parser {
         if (!isExpression()) return false;
         if (!isComparator()) error("No <comparator> following <expression>");
         if (!isExpression()) error("No <expression> following <expression> - <comparator>");
-        makeTree(2, 3, 1);
+        stack.reduceBinary();
         
         return true;
     }
@@ -248,15 +487,7 @@ public class Parser {
      * @throws IOException  If an I/O error occurs 
      */
     public boolean isExpression() {
-        if (!isTerm()) {
-            return false;
-        }
-        while (isAddOperator()) {
-            if (!isUnsignedTerm())
-                error("Error in expression after '+' or '-'");
-            makeTree(2, 3, 1);
-        }
-        return true;
+        return parseExpression(EXPRESSION);
     }
     
     /**
@@ -268,14 +499,7 @@ public class Parser {
      * @throws IOException  If an I/O error occurs 
      */
     public boolean isTerm() {
-        if (!isFactor())
-            return false;
-        while (isMultiplyOperator()) {
-            if (!isFactor()) error("No term after '*' or '/'");
-            makeTree(2, 3, 1);
-        }
-        
-        return true;
+        return parseExpression(TERM);
     }
     
     /**
@@ -287,14 +511,7 @@ public class Parser {
      * @throws IOException  If an I/O error occurs 
      */
     public boolean isUnsignedTerm() {
-        if (!isUnsignedFactor())
-            return false;
-        while (isMultiplyOperator()) {
-            if (!isUnsignedFactor())
-                error("No term after '*' or '/'");
-            makeTree(2, 3, 1);
-        }
-        return true;
+        return parseExpression(UNSIGNED_TERM);
     }
 
     /**
@@ -309,27 +526,7 @@ public class Parser {
      * @throws IOException  If an I/O error occurs 
      */
     public boolean isUnsignedFactor() {
-        if (isVariable()) {
-            return true;
-        }
-        if (isNumber()) {
-            return true;
-        }
-        if (isKeyword("getX") || isKeyword("getY")) {
-            return true;
-        }
-        if (isSymbol("(")) {
-            stack.pop();
-            if (!isExpression()) {
-                error("Error in parenthesized expression");
-            }
-            if (!isSymbol(")")) {
-                error("Unclosed parenthetical expression");
-            }
-            stack.pop();
-            return true;
-        }
-        return false;
+        return parseExpression(UNSIGNED_FACTOR);
     }
 
     
@@ -340,13 +537,7 @@ public class Parser {
      * @throws IOException  If an I/O error occurs 
      */
     public boolean isFactor() {
-        boolean prefix = isAddOperator();
-        if (isUnsignedFactor()) {
-            if (prefix) makeTree(2, 1);
-            return true;
-        }
-        if (prefix) error("Unary sign not followed by a factor.");
-        return false;
+        return parseExpression(FACTOR);
     }
     
     /**
@@ -407,6 +598,128 @@ public class Parser {
     
     //------------------------- Private "helper" methods
 
+    /**
+     * Parses the given part of the expression grammar without recursion.
+     * Going down, every production that is started leaves a frame saying
+     * what is left to do once its first part has been parsed, until an
+     * &lt;unsignedFactor&gt; is reached: a variable, a number, or "(",
+     * which starts a new &lt;expression&gt;. Going up, the frames take the
+     * parsed tree, read the next operator if there is one and start the
+     * production for its right operand, or reduce and finish. Nesting depth
+     * is limited only by the size of the frame array.
+     * 
+     * @param goal The production to be parsed: EXPRESSION, TERM, UNSIGNED_TERM,
+     *             FACTOR or UNSIGNED_FACTOR.
+     * @return <code>true</code> if the production is recognized.
+     * @throws SyntaxException  If syntax error is detected
+     */
+    private boolean parseExpression(int goal) {
+        int depth = 0;
+        int state = goal;
+        while (true) {
+            // down to the next <unsignedFactor>
+            boolean parsed;
+            descend: while (true) {
+                if (depth + 1 >= frames.length) frames = Arrays.copyOf(frames, 2 * frames.length);
+                switch (state) {
+                case EXPRESSION:
+                    frames[depth++] = AFTER_TERM;
+                    state = TERM;
+                    break;
+                case TERM:
+                    frames[depth++] = AFTER_FACTOR;
+                    state = FACTOR;
+                    break;
+                case UNSIGNED_TERM:
+                    frames[depth++] = AFTER_UNSIGNED_FACTOR;
+                    state = UNSIGNED_FACTOR;
+                    break;
+                case FACTOR:
+                    if (isAddOperator()) frames[depth++] = AFTER_SIGN;
+                    state = UNSIGNED_FACTOR;
+                    break;
+                default: // UNSIGNED_FACTOR
+                    if (isVariable() || isNumber() || isKeyword("getX") || isKeyword("getY")) {
+                        parsed = true;
+                        break descend;
+                    }
+                    if (tokenizer.nextMatches(TokenType.SYMBOL, "(")) {
+                        tokenizer.next();
+                        frames[depth++] = AFTER_PARENTHESIZED;
+                        state = EXPRESSION;
+                        break;
+                    }
+                    parsed = false;
+                    break descend;
+                }
+            }
+            
+            if (!parsed) {
+                // nothing was consumed; the innermost frame that needed a tree reports it
+                while (depth > 0) {
+                    String message = MISSING_OPERAND[frames[--depth]];
+                    if (message != null) error(message);
+                }
+                return false;
+            }
+            
+            // back up, until a frame starts another production
+            state = -1;
+            while (depth > 0 && state < 0) {
+                switch (frames[depth - 1]) {
+                case AFTER_TERM:
+                    if (isAddOperator()) {
+                        frames[depth - 1] = AFTER_ADDEND;
+                        state = UNSIGNED_TERM;
+                    } else {
+                        depth--;
+                    }
+                    break;
+                case AFTER_FACTOR:
+                    if (isMultiplyOperator()) {
+                        frames[depth - 1] = AFTER_MULTIPLICAND;
+                        state = FACTOR;
+                    } else {
+                        depth--;
+                    }
+                    break;
+                case AFTER_UNSIGNED_FACTOR:
+                    if (isMultiplyOperator()) {
+                        frames[depth - 1] = AFTER_UNSIGNED_MULTIPLICAND;
+                        state = UNSIGNED_FACTOR;
+                    } else {
+                        depth--;
+                    }
+                    break;
+                case AFTER_ADDEND:
+                    stack.reduceBinary();
+                    frames[depth - 1] = AFTER_TERM;
+                    break;
+                case AFTER_MULTIPLICAND:
+                    stack.reduceBinary();
+                    frames[depth - 1] = AFTER_FACTOR;
+                    break;
+                case AFTER_UNSIGNED_MULTIPLICAND:
+                    stack.reduceBinary();
+                    frames[depth - 1] = AFTER_UNSIGNED_FACTOR;
+                    break;
+                case AFTER_SIGN:
+                    stack.reduce(1);
+                    depth--;
+                    break;
+                default: // AFTER_PARENTHESIZED
+                    if (!tokenizer.nextMatches(TokenType.SYMBOL, ")")) {
+                        error("Unclosed parenthetical expression");
+                    }
+                    tokenizer.next();
+                    depth--;
+                    break;
+                }
+            }
+            if (state < 0) return true;
+        }
+    }
+
     /**
      * Tests whether the next Token is a number. If it is, the Token
      * is consumed, otherwise it is not.
@@ -520,7 +833,7 @@ public class Parser {
         if (!isKeyword("jump")) return false;
         if (!isExpression()) error("No first <expression> following 'jump'");
         if (!isExpression()) error("No second <expression> following 'jump'");
-        makeTree(3, 2, 1);
+        stack.reduce(2);
         if (!isEol()) error("No <eol> at the end of jump sequence");
         return true;
     }
@@ -537,7 +850,7 @@ public class Parser {
         if (!isKeyword("set")) return false;
         if (!isVariable()) error("No <variable> following 'set'");
         if (!isExpression()) error("No <expression> following 'set' - <variable>");
-        makeTree(3, 2, 1);
+        stack.reduce(2);
         if (!isEol()) error("No <eol> at the end of set sequence");
         
         return true;
@@ -556,7 +869,7 @@ public class Parser {
         if (!isKeyword("repeat")) return false;
         if (!isExpression()) error("No <expression> following 'repeat'");
         if (!isBlock()) error("No <block> at the end of repeat sequence");
-        makeTree(3, 2, 1);
+        stack.reduce(2);
         
         return true;
     }
@@ -573,7 +886,7 @@ public class Parser {
         if (!isKeyword("while")) return false;
         if (!isCondition()) error("No <condition> following 'while'");
         if (!isBlock()) error("No <block> at the end of while sequence");
-        makeTree(3, 2, 1);
+        stack.reduce(2);
         
         return true;
     }
@@ -596,15 +909,7 @@ public class Parser {
             if (!isBlock()) error("No <block> following 'else'");
             elseCount++;
         }
-        int numOfIndices = 2 + elseCount; // i.e. 3 + elseCount - 1
-        int[] indexArray = new int[numOfIndices]; 
-        for (int i = 0, j = numOfIndices; i < numOfIndices; i++, j--) {
-            indexArray[i] = j;
-        }
-        
-        makeTree(3 + elseCount, indexArray);
-        // if else count = 0 makeTree(3,2,1) 2
-        // if else count = 1 makeTree(4,3,2,1) 3      
+        stack.reduce(2 + elseCount); // the condition, the block and the else block, if any
         
         return true;
     }
@@ -626,11 +931,152 @@ public class Parser {
         }
         
         makeRootDesignatedTree("list", numOfExpressions);
-        makeTree(3, 2, 1);
+        stack.reduce(2);
         if (!isEol()) error("No <eol> at the end of do sequence");
         return true;
     }
     
+    /**
+     * Returns the index of every "def" from the given index on, which must be
+     * one, followed by the number of tokens; or null if there is a token
+     * before the first "def".
+     * 
+     * @param tokens The tokens of the program.
+     * @param start The index of the token after the commands of the program.
+     * @return The bounds of the procedures.
+     */
+    private static int[] procedureBounds(TokenStream tokens, int start) {
+        int[] bounds = new int[16];
+        int count = 0;
+        for (int i = start; i < tokens.size(); i++) {
+            if (tokens.type(i) == TokenType.KEYWORD && tokens.textEquals(i, "def")) {
+                if (count + 1 == bounds.length) bounds = Arrays.copyOf(bounds, 2 * bounds.length);
+                bounds[count++] = i;
+            }
+        }
+        if (count > 0 ? bounds[0] != start : start != tokens.size()) return null;
+        bounds[count++] = tokens.size();
+        return Arrays.copyOf(bounds, count);
+    }
+    
+    /**
+     * Creates an array of Trees.
+     */
+    @SuppressWarnings("unchecked")
+    private static Tree<Token>[] newTreeArray(int length) {
+        return (Tree<Token>[]) new Tree<?>[length];
+    }
+    
+    /**
+     * Tries to parse a top-level &lt;command&gt;, and passes it to the listener.
+     * 
+     * @param listener The receiver of the command, or <code>null</code>.
+     * @return <code>true</code> if a &lt;command&gt; is recognized or skipped.
+     * @throws SyntaxException  If syntax error is detected, and recovery is off
+     */
+    private boolean isTopLevelCommand(ProgramListener listener) {
+        int depth = stack.size();
+        if (!isCommandOrSkip(false)) return false;
+        if (listener != null && stack.size() > depth) listener.command(stack.peek());
+        return true;
+    }
+    
+    /**
+     * Tries to parse a &lt;procedure&gt;, and passes it to the listener.
+     * 
+     * @param listener The receiver of the procedure, or <code>null</code>.
+     * @return <code>true</code> if a &lt;procedure&gt; is recognized or skipped.
+     * @throws SyntaxException  If syntax error is detected, and recovery is off
+     */
+    private boolean isTopLevelProcedure(ProgramListener listener) {
+        int depth = stack.size();
+        if (!isProcedureOrSkip()) return false;
+        if (listener != null && stack.size() > depth) listener.procedure(stack.peek());
+        return true;
+    }
+    
+    /**
+     * Tries to parse a &lt;command&gt;. With recovery on, a line that is not
+     * a command, or a command with a syntax error, is reported and skipped,
+     * and <code>true</code> is returned as if it were a command.
+     * 
+     * @param inBlock Whether the command is in a block, which a "}" ends.
+     * @return <code>true</code> if a &lt;command&gt; is recognized or skipped.
+     * @throws SyntaxException  If syntax error is detected, and recovery is off
+     */
+    private boolean isCommandOrSkip(boolean inBlock) {
+        if (!recovering) return isCommand();
+        int depth = stack.size();
+        try {
+            if (isCommand()) return true;
+            if (!tokenizer.hasNext() || tokenizer.nextMatches(TokenType.KEYWORD, "def")
+                    || (inBlock && tokenizer.nextMatches(TokenType.SYMBOL, "}"))) {
+                return false;
+            }
+            error("No <command> at the beginning of the line");
+        } catch (SyntaxException e) {
+            errors.add(e);
+            while (stack.size() > depth) stack.pop();
+            synchronize(inBlock);
+        }
+        return true;
+    }
+    
+    /**
+     * Tries to parse a &lt;procedure&gt;. With recovery on, anything else
+     * that is left of the program is reported, and a procedure with a syntax
+     * error is reported and skipped up to the next "def"; <code>true</code>
+     * is returned as if there were a procedure.
+     * 
+     * @return <code>true</code> if a &lt;procedure&gt; is recognized or skipped.
+     * @throws SyntaxException  If syntax error is detected, and recovery is off
+     */
+    private boolean isProcedureOrSkip() {
+        if (!recovering) return isProcedure();
+        int depth = stack.size();
+        try {
+            if (isProcedure()) return true;
+            if (!tokenizer.hasNext()) return false;
+            report("No <command> or <procedure> at the end of <program>");
+            // a command out of place is skipped as a whole, if it is one
+            if (!isCommand()) synchronize(false);
+            while (stack.size() > depth) stack.pop();
+        } catch (SyntaxException e) {
+            errors.add(e);
+            while (stack.size() > depth) stack.pop();
+            while (tokenizer.hasNext() && !tokenizer.nextMatches(TokenType.KEYWORD, "def")) {
+                tokenizer.next();
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Skips tokens after a syntax error, up to and including the end of a line
+     * that leaves no bracket opened on the skipped lines, or up to a "def", or
+     * up to a "}" that closes the block the error is in.
+     * 
+     * @param inBlock Whether the error is in a block.
+     */
+    private void synchronize(boolean inBlock) {
+        int open = 0;
+        while (tokenizer.hasNext()) {
+            if (tokenizer.nextMatches(TokenType.KEYWORD, "def")) return;
+            if (tokenizer.nextMatches(TokenType.SYMBOL, "}")) {
+                if (open == 0 && inBlock) return;
+                if (open > 0) open--;
+            } else if (tokenizer.nextMatches(TokenType.SYMBOL, "{")) {
+                open++;
+            } else if (tokenizer.nextMatches(TokenType.EOL) && open == 0) {
+                while (tokenizer.nextMatches(TokenType.EOL)) {
+                    tokenizer.next();
+                }
+                return;
+            }
+            tokenizer.next();
+        }
+    }
+    
     /**
      * Pushes a new Tree with designated root onto the stack. If there are leaf elements
      * on the stack, those are added to the root prior to the Tree's being pushed.
@@ -639,17 +1085,7 @@ public class Parser {
      * @param numOfLeaves Number of leaves to add to the list Tree
      */   
     private void makeRootDesignatedTree(String root, int numOfLeaves) {
-        stack.push(new Tree<Token>(new Token(TokenType.KEYWORD, root)));
-        if (numOfLeaves == 0) {
-            makeTree(1); // Tree with designated root if list is empty
-            return; 
-        }
-        
-        int[] indexArray = new int[numOfLeaves]; 
-        for (int i = 0, j = numOfLeaves + 1; i < numOfLeaves; i++, j--) {
-            indexArray[i] = j;
-        }
-        makeTree(1, indexArray); // Tree with designated root otherwise
+        stack.reduceInto(new Tree<Token>(Token.keyword(root)), numOfLeaves);
     }
 
     /**
@@ -663,16 +1099,11 @@ public class Parser {
      * @throws IOException  If an I/O error occurs 
      */
     private boolean nextTokenMatches(TokenType type) {
-        if (!tokenizer.hasNext()) {
+        if (!tokenizer.nextMatches(type)) {
             return false;
         }
-        Token t = tokenizer.next();
-        if (t.getType() == type) {
-            stack.push(new Tree<Token>(t));
-            return true;
-        }
-        tokenizer.pushBack();
-        return false;
+        stack.push(new Tree<Token>(tokenizer.next()));
+        return true;
     }
 
     /**
@@ -688,61 +1119,11 @@ public class Parser {
      * @throws IOException  If an I/O error occurs 
      */
     private boolean nextTokenMatches(TokenType type, String value) {
-        if (!tokenizer.hasNext()) {
+        if (!tokenizer.nextMatches(type, value)) {
             return false;
         }
-        Token t = tokenizer.next();
-        if (type == t.getType() && value.equals(t.getValue())) {
-            stack.push(new Tree<Token>(t));
-            return true;
-        }
-        tokenizer.pushBack();
-        return false;
-    }
-
-    /**
-     * Assembles some number of elements from the top of the global stack
-     * into a new Tree, and replaces those elements with the new Tree.<p>
-     * <b>Caution:</b> The arguments must be consecutive integers 1..N,
-     * in any order, but with no gaps; for example, makeTree(2,4,1,5)
-     * would cause problems (3 was omitted).
-     * <p>Example: If the stack contains</p><pre>
-     * 1  |  A  |                                     |    B    |       
-     * 2  |  B  |                                     |   / \   |
-     * 3  |  C  |  then makeTree(2, 3, 1) results in  |  C   A  |
-     *    | ... |                                     |   ...   |
-     *    |_____|                                     |_________|
-     *    </pre>
-     * @param rootIndex Which stack element (counting from top=1) to use as
-     * the root of the new Tree.
-     * @param childIndices Which stack elements to use as the children
-     * of the root.
-     */    
-    private void makeTree(int rootIndex, int... childIndices) {
-        // Get root from stack
-        Tree<Token> root = getStackItem(rootIndex);
-        // Get other trees from stack and add them as children of root
-        for (int i = 0; i < childIndices.length; i++) {
-            root.addChildren(getStackItem(childIndices[i]));
-        }
-        // Pop root and all children from stack
-        for (int i = 0; i <= childIndices.length; i++) {
-            stack.pop();
-        }
-        // Put the root back on the stack
-        stack.push(root);
-    }
-      
-    /**
-     * Returns, as a Tree, the nth element from the top of the
-     * instance variable <code>stack</code> (the top element is 1).
-     * 
-     * @param n Which element of the stack, counting
-     *          1 as the top element, to return.
-     * @return The indicated stack element.
-     */
-    private Tree<Token> getStackItem(int n) {
-        return stack.get(stack.size() - n);
+        stack.push(new Tree<Token>(tokenizer.next()));
+        return true;
     }
 
     /**
@@ -758,6 +1139,95 @@ public class Parser {
                 System.out.println(stack.get(i));
             }
         }
-        throw new SyntaxException(message + "; stack = " + stack);
+        throw syntaxError(message);
+    }
+
+    /**
+     * Throws a <code>SyntaxException</code> with the given message, as
+     * error(message) does, or adds it to the errors if recovery is on.
+     * @param message The text to put in the <code>SyntaxException</code>.
+     */
+    private void report(String message) {
+        if (!recovering) error(message);
+        errors.add(syntaxError(message));
+    }
+
+    /**
+     * Makes a <code>SyntaxException</code> at the next token, with the given
+     * message, followed by the stack unless recovery is on. Lines are counted
+     * on from the last error, so that reporting every error of a program
+     * takes time linear in its length.
+     * @param message The text to put in the <code>SyntaxException</code>.
+     * @return The exception.
+     */
+    private SyntaxException syntaxError(String message) {
+        int position = tokenizer.nextStart();
+        CharSequence source = tokenizer.getSource();
+        if (position < counted) {
+            counted = 0;
+            line = 1;
+            lineStart = 0;
+        }
+        for (; counted < position; counted++) {
+            if (source.charAt(counted) == '\n') {
+                line++;
+                lineStart = counted + 1;
+            }
+        }
+        if (!recovering) message += "; stack = " + stack;
+        return new SyntaxException(message, line, position - lineStart + 1);
+    }
+
+    /**
+     * Parses the procedures between the given bounds, splitting the work
+     * until there are few enough tokens for a single task.
+     */
+    private static class ProcedureTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final TokenStream tokens;
+        private final int[] bounds;
+        private final Tree<Token>[] procedures;
+        private final int from;
+        private final int to;
+        private volatile boolean failed = false;
+
+        ProcedureTask(TokenStream tokens, int[] bounds, Tree<Token>[] procedures, int from, int to) {
+            this.tokens = tokens;
+            this.bounds = bounds;
+            this.procedures = procedures;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Tells whether a procedure of this task failed to parse.
+         */
+        boolean failed() {
+            return failed;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1 && bounds[to] - bounds[from] > PROCEDURE_BATCH) {
+                int middle = (from + to) >>> 1;
+                ProcedureTask left = new ProcedureTask(tokens, bounds, procedures, from, middle);
+                ProcedureTask right = new ProcedureTask(tokens, bounds, procedures, middle, to);
+                invokeAll(left, right);
+                failed = left.failed() || right.failed();
+                return;
+            }
+            try {
+                for (int i = from; i < to; i++) {
+                    Parser parser = new Parser(new Tokenizer(tokens, bounds[i], bounds[i + 1]));
+                    if (!parser.isProcedure() || parser.tokenizer.hasNext()) {
+                        failed = true;
+                        return;
+                    }
+                    procedures[i] = parser.stack.pop();
+                }
+            } catch (SyntaxException e) {
+                failed = true;
+            }
+        }
     }
 }
@@ -0,0 +1,185 @@
+package parser;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import tokenizer.MappedSource;
+
+/**
+ * The compiled form of a program file, kept next to it with the extension
+ * <code>.logoc</code>, so that a program that is run again is not parsed
+ * again. The compiled file holds a version number, the SHA-256 hash of the
+ * source text it was compiled from, and the program's {@link FlatTree} in
+ * binary form. It is used only if both match; otherwise the program is
+ * parsed, and compiled again.
+ * <p>
+ * The source is mapped into memory once, and the hash is taken of the same
+ * characters the parser reads, so a compiled file always matches the text
+ * it claims to, even if the source changes while it is parsed.
+ *
+ * @author Joopyo Hong
+ */
+public class ProgramCache {
+    /**
+     * The extension of compiled files.
+     */
+    public static final String EXTENSION = ".logoc";
+
+    private static final int MAGIC = 0x4C4F4743; // "LOGC"
+    /**
+     * The version of the compiled form; to be changed with the opcodes or the
+     * encoding of a FlatTree, so that older files are compiled again.
+     */
+    static final int VERSION = 1;
+    private static final int KEY_LENGTH = 64; // hexadecimal digits of a SHA-256 hash
+
+    private final File source;
+    private final File compiled;
+    private final CharSequence text;
+    private final String key;
+
+    /**
+     * Constructor for the cache of the given program file, which is read here.
+     *
+     * @param source    the program file
+     * @exception IOException If the file cannot be read
+     */
+    public ProgramCache(File source) throws IOException {
+        this.source = source;
+        this.compiled = compiledFile(source);
+        this.text = MappedSource.map(source);
+        this.key = BackgroundParser.key(text);
+    }
+
+    /**
+     * Returns the compiled file for a program file: the program file with
+     * its extension, if any, replaced by <code>.logoc</code>.
+     *
+     * @param source    the program file
+     * @return the compiled file
+     */
+    public static File compiledFile(File source) {
+        String name = source.getName();
+        int dot = name.lastIndexOf('.');
+        if (dot > 0) name = name.substring(0, dot);
+        return new File(source.getAbsoluteFile().getParentFile(), name + EXTENSION);
+    }
+
+    /**
+     * Returns the program file.
+     *
+     * @return the program file
+     */
+    public File getSource() {
+        return source;
+    }
+
+    /**
+     * Returns the compiled file.
+     *
+     * @return the compiled file
+     */
+    public File getCompiledFile() {
+        return compiled;
+    }
+
+    /**
+     * Returns the program tree from the compiled file, if it was compiled
+     * from the text of the program file by this version.
+     *
+     * @return the program tree, or null if there is no such compiled file
+     */
+    public FlatTree load() {
+        if (!compiled.isFile()) return null;
+        try {
+            FileInputStream input = new FileInputStream(compiled);
+            try {
+                FileChannel channel = input.getChannel();
+                ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (in.getInt() != MAGIC || in.getInt() != VERSION) return null;
+                byte[] storedKey = new byte[KEY_LENGTH];
+                in.get(storedKey);
+                if (!key.equals(new String(storedKey, StandardCharsets.US_ASCII))) return null;
+                FlatTree tree = FlatTree.read(in);
+                return in.hasRemaining() ? null : tree;
+            } finally {
+                input.close();
+            }
+        } catch (IOException e) {
+            return null;
+        } catch (BufferUnderflowException e) {
+            return null; // cut short
+        } catch (IllegalArgumentException e) {
+            return null; // corrupt
+        }
+    }
+
+    /**
+     * Returns a new Parser for the text of the program file.
+     *
+     * @return the parser
+     */
+    public Parser newParser() {
+        return new Parser(text);
+    }
+
+    /**
+     * Writes the compiled file for the program tree, which must have been
+     * parsed from the text of the program file. The file is written under
+     * another name and then renamed, so a reader never finds it half written.
+     *
+     * @param tree  the program tree
+     * @exception IOException If the file cannot be written
+     */
+    public void store(FlatTree tree) throws IOException {
+        File temporary = new File(compiled.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.write(key.getBytes(StandardCharsets.US_ASCII));
+            tree.write(out);
+        } finally {
+            out.close();
+        }
+        try {
+            Files.move(temporary.toPath(), compiled.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            temporary.delete();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the program tree, from the compiled file if it is up to date,
+     * otherwise by parsing the program file and then compiling it. A compiled
+     * file that cannot be written is only a lost saving.
+     *
+     * @return the program tree
+     * @exception SyntaxException If the program has a syntax error
+     */
+    public FlatTree loadOrParse() {
+        FlatTree tree = load();
+        if (tree != null) return tree;
+        Parser parser = newParser();
+        parser.isProgram();
+        tree = FlatTree.fromTree(parser.stack.peek());
+        try {
+            store(tree);
+        } catch (IOException e) {
+            // the program is run all the same, and compiled next time
+        }
+        return tree;
+    }
+}
@@ -0,0 +1,26 @@
+package parser;
+
+import tokenizer.Token;
+import tree.Tree;
+
+/**
+ * Receives the top-level commands and procedures of a program, in the order
+ * of the source, as soon as a Parser has parsed each of them.
+ * 
+ * @author Joopyo Hong
+ * @see Parser#isProgram(ProgramListener)
+ */
+public interface ProgramListener {
+
+    /**
+     * Called when a top-level command has been parsed.
+     * @param command The tree of the command.
+     */
+    void command(Tree<Token> command);
+
+    /**
+     * Called when a procedure has been parsed. All commands come before it.
+     * @param procedure The tree of the procedure.
+     */
+    void procedure(Tree<Token> procedure);
+}
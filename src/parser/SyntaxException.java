@@ -1,12 +1,14 @@
 package parser;
 
 /**
- * Represents an error during recognition or parsing. All constructors
- * are as in RuntimeException.
+ * Represents an error during recognition or parsing. The constructors
+ * are as in RuntimeException, plus one that gives where the error is.
  * 
  * @author Joopyo Hong
  */
 public class SyntaxException extends RuntimeException {
+    private int line = 0;
+    private int column = 0;
 
     /**
      * Constructor for SyntaxException.
@@ -23,6 +25,18 @@ public class SyntaxException extends RuntimeException {
         super(message);
     }
 
+    /**
+     * Constructor for SyntaxException at a known place in the program.
+     * @param message An error message to include.
+     * @param line The line of the error, counting from 1.
+     * @param column The column of the error, counting from 1.
+     */
+    public SyntaxException(String message, int line, int column) {
+        super(message);
+        this.line = line;
+        this.column = column;
+    }
+
     /**
      * Constructor for SyntaxException.
      * @param cause The original Exception that occurred.
@@ -39,4 +53,20 @@ public class SyntaxException extends RuntimeException {
     public SyntaxException(String message, Throwable cause) {
         super(message, cause);
     }
+
+    /**
+     * Returns the line of the error.
+     * @return The line, counting from 1, or 0 if it is not known.
+     */
+    public int getLine() {
+        return line;
+    }
+
+    /**
+     * Returns the column of the error.
+     * @return The column, counting from 1, or 0 if it is not known.
+     */
+    public int getColumn() {
+        return column;
+    }
 }
@@ -6,9 +6,19 @@ import org.junit.runners.Suite.SuiteClasses;
 
 @RunWith(Suite.class)
 @SuiteClasses({
+    BackgroundParserTest.class,
+    FlatTreeTest.class,
+    IncrementalParserTest.class,
+    IncrementalTokenizerTest.class,
+    KeywordSetTest.class,
+    NodeStackTest.class,
     ParserTest.class,
+    ProgramCacheTest.class,
+    StreamingProgramTest.class,
     TokenizerTest.class,
+    TokenStreamTest.class,
     TokenTest.class,
+    TreeInternerTest.class,
     TreeTest.class
     })
 public class AllTests {}
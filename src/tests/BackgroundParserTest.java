@@ -0,0 +1,160 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import parser.BackgroundParser;
+import parser.Parser;
+import parser.SyntaxException;
+import tokenizer.Token;
+import tree.Tree;
+
+/**
+ * @author Joopyo Hong
+ */
+public class BackgroundParserTest {
+	BackgroundParser parser = new BackgroundParser(4);
+
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@After
+	public void tearDown() throws Exception {
+		parser.shutdown();
+	}
+
+	/**
+	 * Test method for {@link parser.BackgroundParser#submit(String, parser.BackgroundParser.Listener)}.
+	 */
+	@Test
+	public void testSubmit() throws InterruptedException {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(1);
+		final List<String> reported = Collections.synchronizedList(new ArrayList<String>());
+		final List<Tree<Token>> trees = Collections.synchronizedList(new ArrayList<Tree<Token>>());
+
+		// the first result is held up, so that the next texts queue behind it
+		String first = "forward 1\n";
+		parser.submit(first, new BackgroundParser.Listener() {
+			@Override
+			public void parsed(String text, Tree<Token> tree, SyntaxException error) {
+				reported.add(text);
+				started.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+				}
+			}
+		});
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+
+		BackgroundParser.Listener listener = new BackgroundParser.Listener() {
+			@Override
+			public void parsed(String text, Tree<Token> tree, SyntaxException error) {
+				reported.add(text);
+				trees.add(tree);
+				done.countDown();
+			}
+		};
+		parser.submit("forward 1\nright", listener);
+		String last = "forward 1\nright 90\n";
+		parser.submit(last, listener);
+		release.countDown();
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		parser.shutdown();
+
+		// the stale text is neither parsed nor reported
+		assertEquals(2, parser.getParseCount());
+		assertEquals(2, reported.size());
+		assertEquals(last, reported.get(1));
+		assertEquals(fullParse(last), trees.get(0));
+	}
+
+	/**
+	 * Test method for {@link parser.BackgroundParser#submit(String, parser.BackgroundParser.Listener)},
+	 * on a program nested too deeply for the parser's stack.
+	 */
+	@Test
+	public void testSubmitFailure() throws InterruptedException {
+		StringBuilder nested = new StringBuilder();
+		for (int i = 0; i < 100000; i++) {
+			nested.append("repeat 2 {\n");
+		}
+		nested.append("forward 1\n");
+		for (int i = 0; i < 100000; i++) {
+			nested.append("}\n");
+		}
+		final CountDownLatch failed = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(2);
+		final List<Tree<Token>> trees = Collections.synchronizedList(new ArrayList<Tree<Token>>());
+		final List<SyntaxException> errors = Collections.synchronizedList(new ArrayList<SyntaxException>());
+		BackgroundParser.Listener listener = new BackgroundParser.Listener() {
+			@Override
+			public void parsed(String text, Tree<Token> tree, SyntaxException error) {
+				trees.add(tree);
+				errors.add(error);
+				failed.countDown();
+				done.countDown();
+			}
+		};
+		parser.submit(nested.toString(), listener);
+		assertTrue(failed.await(10, TimeUnit.SECONDS));
+		String text = "forward 1\nright 90\n";
+		parser.submit(text, listener);
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+
+		// the failure is reported, and the parser still works
+		assertNull(trees.get(0));
+		assertNotNull(errors.get(0));
+		assertEquals(fullParse(text), trees.get(1));
+		assertNull(errors.get(1));
+	}
+
+	/**
+	 * Test method for {@link parser.BackgroundParser#parse(String)}.
+	 */
+	@Test
+	public void testParseIsCached() {
+		String a = "set dog 5\nforward dog\n";
+		String b = "set dog 5\nforward dog\nright 90\n";
+		assertEquals(fullParse(a), parser.parse(a));
+		assertEquals(fullParse(b), parser.parse(b));
+		assertSame(parser.parse(a), parser.parse(new String(a)));
+		assertEquals(2, parser.getParseCount());
+
+		String bad = "set dog\n";
+		for (int i = 0; i < 2; i++) {
+			try {
+				parser.parse(bad);
+				fail("Exception was expected");
+			} catch (SyntaxException e) {
+			}
+		}
+		assertEquals(3, parser.getParseCount());
+
+		// the least recently used result is dropped
+		parser.parse("home\n");
+		parser.parse("penup\n");
+		parser.parse("pendown\n");
+		parser.parse(b);
+		assertEquals(7, parser.getParseCount());
+	}
+
+	/**
+	 * Returns the tree the whole text parses into.
+	 */
+	private Tree<Token> fullParse(String text) {
+		Parser fullParser = new Parser(text);
+		assertTrue(fullParser.isProgram());
+		return fullParser.stack.peek();
+	}
+}
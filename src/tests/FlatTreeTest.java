@@ -0,0 +1,157 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import parser.FlatTree;
+import parser.Parser;
+import tokenizer.Token;
+import tokenizer.TokenType;
+import tree.Tree;
+
+/**
+ * @author Joopyo Hong
+ */
+public class FlatTreeTest {
+	private static final String PROGRAM = "set dog 5\nforward dog * -(2 + 3)\nred\n"
+			+ "if dog > 4 {\nhome\n}\nelse {\ndo square 10 dog\n}\n"
+			+ "def square side n {\nrepeat 4 {\nforward side\nright 90\n}\n}\n";
+
+	/**
+	 * Test method for {@link parser.FlatTree#fromTree(Tree)} and {@link parser.FlatTree#toTree()}.
+	 */
+	@Test
+	public void testRoundTrip() {
+		Tree<Token> tree = parse(PROGRAM);
+		FlatTree flat = FlatTree.fromTree(tree);
+		assertEquals(tree, flat.toTree());
+		assertEquals(tree.child(1).child(0), flat.toTree(flat.child(flat.child(0, 1), 0)));
+
+		Tree<Token> leaf = new Tree<Token>(new Token(TokenType.NAME, "x"));
+		assertEquals(leaf, FlatTree.fromTree(leaf).toTree());
+
+		// tokens without an opcode of their own
+		Tree<Token> odd = new Tree<Token>(Token.keyword("else"), new Tree<Token>(Token.symbol('%')),
+				new Tree<Token>(Token.NEWLINE), new Tree<Token>(new Token(TokenType.SYMBOL, "<=")));
+		FlatTree flatOdd = FlatTree.fromTree(odd);
+		assertEquals(odd, flatOdd.toTree());
+		assertEquals(FlatTree.KEYWORD, flatOdd.opcode(0));
+		assertEquals(FlatTree.SYMBOL, flatOdd.opcode(1));
+		assertEquals(FlatTree.EOL, flatOdd.opcode(2));
+		assertEquals(TokenType.EOL, flatOdd.token(2).getType());
+	}
+
+	/**
+	 * Test method for {@link parser.FlatTree#fromTree(Tree)}, on a tree
+	 * too deep for recursion.
+	 */
+	@Test
+	public void testDeepTree() {
+		Tree<Token> tree = new Tree<Token>(new Token(TokenType.NUMBER, "1"));
+		for (int i = 0; i < 100000; i++) {
+			tree = new Tree<Token>(Token.symbol('-'), tree);
+		}
+		FlatTree flat = FlatTree.fromTree(tree);
+		assertEquals(100001, flat.size());
+		assertEquals(99999, flat.firstChild(99998));
+		Tree<Token> back = flat.toTree();
+		for (int i = 0; i < 100000; i++) {
+			assertEquals(1, back.numberOfChildren());
+			back = back.child(0);
+		}
+		assertEquals(1.0, back.getValue().getNumber(), 0);
+	}
+
+	/**
+	 * Test method for the navigation methods of {@link parser.FlatTree}.
+	 */
+	@Test
+	public void testNavigation() {
+		FlatTree flat = FlatTree.fromTree(parse(PROGRAM));
+		assertEquals(0, flat.root());
+		assertEquals(FlatTree.PROGRAM, flat.opcode(0));
+		int block = flat.firstChild(0);
+		assertEquals(FlatTree.BLOCK, flat.opcode(block));
+		assertEquals(4, flat.numberOfChildren(block));
+		int list = flat.nextSibling(block);
+		assertEquals(FlatTree.LIST, flat.opcode(list));
+		assertEquals(FlatTree.NONE, flat.nextSibling(list));
+
+		int set = flat.child(block, 0);
+		assertEquals(FlatTree.SET, flat.opcode(set));
+		assertEquals(FlatTree.NAME, flat.opcode(flat.child(set, 0)));
+		assertEquals("dog", flat.text(flat.child(set, 0)));
+		assertEquals(5.0, flat.number(flat.child(set, 1)), 0);
+		assertTrue(Double.isNaN(flat.number(set)));
+
+		int forward = flat.child(block, 1);
+		int times = flat.firstChild(forward);
+		assertEquals(FlatTree.TIMES, flat.opcode(times));
+		int minus = flat.child(times, 1);
+		assertEquals(FlatTree.MINUS, flat.opcode(minus));
+		assertEquals(1, flat.numberOfChildren(minus));
+		assertEquals(FlatTree.PLUS, flat.opcode(flat.firstChild(minus)));
+		assertEquals(2, flat.numberOfChildren(flat.firstChild(minus)));
+
+		int def = flat.firstChild(list);
+		assertEquals(FlatTree.DEF, flat.opcode(def));
+		assertEquals(FlatTree.HEADER, flat.opcode(flat.firstChild(def)));
+		assertEquals(FlatTree.NONE, flat.firstChild(flat.child(block, 0) + 1));
+		try {
+			flat.child(set, 2);
+			fail("Exception was expected");
+		} catch (IndexOutOfBoundsException e) {
+		}
+	}
+
+	/**
+	 * Test method for {@link parser.FlatTree#accept(int, parser.FlatTree.Visitor)}.
+	 */
+	@Test
+	public void testAccept() {
+		final FlatTree flat = FlatTree.fromTree(parse(PROGRAM));
+		FlatTree.Visitor<String> visitor = new FlatTree.Visitor<String>() {
+			@Override
+			public String visitKeyword(FlatTree tree, int node, int opcode) {
+				assertSame(flat, tree);
+				return "keyword " + tree.text(node);
+			}
+
+			@Override
+			public String visitOperator(FlatTree tree, int node, int opcode) {
+				return "operator " + tree.text(node);
+			}
+
+			@Override
+			public String visitName(FlatTree tree, int node, String name) {
+				return "name " + name;
+			}
+
+			@Override
+			public String visitNumber(FlatTree tree, int node, double value) {
+				return "number " + value;
+			}
+
+			@Override
+			public String visitToken(FlatTree tree, int node, Token token) {
+				return "token " + token;
+			}
+		};
+		StringBuilder visits = new StringBuilder();
+		for (int node = 0; node < 12; node++) {
+			visits.append(flat.accept(node, visitor)).append(';');
+		}
+		assertEquals("keyword program;keyword block;keyword set;name dog;number 5.0;keyword forward;"
+				+ "operator *;name dog;operator -;operator +;number 2.0;number 3.0;", visits.toString());
+	}
+
+	/**
+	 * Parses a program.
+	 */
+	private static Tree<Token> parse(String text) {
+		Parser parser = new Parser(text);
+		assertTrue(parser.isProgram());
+		return parser.stack.peek();
+	}
+}
@@ -0,0 +1,177 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+import org.junit.Test;
+
+import parser.IncrementalParser;
+import parser.Parser;
+import parser.SyntaxException;
+import tokenizer.Token;
+import tree.Tree;
+
+/**
+ * @author Joopyo Hong
+ */
+public class IncrementalParserTest {
+
+	/**
+	 * Test method for {@link parser.IncrementalParser#edit(CharSequence, int, int, int)}.
+	 */
+	@Test
+	public void testEdit() {
+		String text = "set dog 5\nforward dog\nright 90\ndef square side {\nforward side\n}\n";
+		IncrementalParser parser = new IncrementalParser(text);
+		assertSameTree(text, parser.getTree());
+
+		// "dog" becomes "dogs" on line 2: only that command, and the one before, are parsed again
+		text = "set dog 5\nforward dogs\nright 90\ndef square side {\nforward side\n}\n";
+		assertSameTree(text, parser.edit(text, 21, 0, 1));
+		assertEquals(2, parser.getReparsedCount());
+
+		// an else part for a new if
+		text = "set dog 5\nif dog = 5 {\nhome\n}\nforward dogs\nright 90\ndef square side {\nforward side\n}\n";
+		assertSameTree(text, parser.edit(text, 10, 0, 20));
+		text = "set dog 5\nif dog = 5 {\nhome\n}\nelse {\npenup\n}\nforward dogs\nright 90\ndef square side {\nforward side\n}\n";
+		assertSameTree(text, parser.edit(text, 30, 0, 15));
+
+		// a procedure before a command
+		String broken = "set dog 5\ndef a {\n}\nif dog = 5 {\nhome\n}\nelse {\npenup\n}\nforward dogs\nright 90\ndef square side {\nforward side\n}\n";
+		assertNull(parser.edit(broken, 10, 0, 10));
+		assertNotNull(parser.getError());
+		assertEquals(4, parser.getError().getLine());
+		assertEquals(1, parser.getError().getColumn());
+		assertSameTree(text, parser.edit(text, 10, 10, 0));
+		assertNull(parser.getError());
+
+		// changes inside a procedure
+		int offset = text.indexOf("side\n}");
+		text = text.substring(0, offset) + "2 * side\n}\n";
+		assertSameTree(text, parser.edit(text, offset, 0, 4));
+		assertEquals(1, parser.getReparsedCount());
+
+		// no commands at all
+		parser = new IncrementalParser("def square side {\nforward side\n}\n");
+		assertNull(parser.getTree());
+		assertEquals(1, parser.getError().getLine());
+		assertEquals(1, parser.getError().getColumn());
+	}
+
+	/**
+	 * Test method for {@link parser.IncrementalParser#update(CharSequence, java.util.function.BooleanSupplier)}.
+	 */
+	@Test
+	public void testCancelledUpdate() {
+		String text = "forward 1\nright 90\nforward 2\ndef square side {\nforward side\n}\n";
+		IncrementalParser parser = new IncrementalParser(text);
+		final int[] checks = {0};
+		String edited = text.replace("forward 2", "forward 3");
+		try {
+			// cancelled once the first command has been parsed
+			parser.update(edited, new BooleanSupplier() {
+				@Override
+				public boolean getAsBoolean() {
+					return ++checks[0] > 1;
+				}
+			});
+			fail("Exception was expected");
+		} catch (CancellationException e) {
+		}
+		assertEquals(2, checks[0]);
+		assertNull(parser.getTree());
+		assertNull(parser.getError());
+
+		// the next update parses all of its text
+		assertSameTree(edited, parser.update(edited));
+		assertEquals(4, parser.getReparsedCount());
+		text = edited.replace("right 90", "right 45");
+		assertSameTree(text, parser.update(text, new BooleanSupplier() {
+			@Override
+			public boolean getAsBoolean() {
+				return false;
+			}
+		}));
+	}
+
+	/**
+	 * Test method for {@link parser.IncrementalParser#edit(CharSequence, int, int, int)},
+	 * on random edits.
+	 */
+	@Test
+	public void testRandomEdits() {
+		String[] pieces = {"forward 1\n", "set a 2\n", "repeat 3 {\n", "}\n", "def p x {\n",
+				"if a = 1 {\n", "else {\n", "home\n", "\n", "a", "+", "(", " ", "{", "// note\n"};
+		Random random = new Random(42);
+		String text = "set a 1\nforward a\n";
+		IncrementalParser parser = new IncrementalParser(text);
+		for (int i = 0; i < 3000; i++) {
+			int offset = random.nextInt(text.length() + 1);
+			int removed = random.nextInt(Math.min(12, text.length() - offset) + 1);
+			String inserted = random.nextInt(3) == 0 ? "" : pieces[random.nextInt(pieces.length)];
+			text = text.substring(0, offset) + inserted + text.substring(offset + removed);
+			assertSameTree(text, parser.edit(text, offset, removed, inserted.length()));
+		}
+	}
+
+	/**
+	 * Test method for {@link parser.IncrementalParser#update(CharSequence)}.
+	 */
+	@Test
+	public void testUpdate() {
+		String[] versions = {"forward 1\n", "forward 1\nright 90\n", "forward 12\nright 90\n",
+				"forward\nright 90\n", "home\n", "home\nhome\n", "", "home\nhome\nhome\n"};
+		IncrementalParser parser = new IncrementalParser("");
+		assertNull(parser.getTree());
+		for (String text : versions) {
+			assertSameTree(text, parser.update(text));
+		}
+		parser.update("home\nhome\nhome\nhome\n");
+		assertEquals(2, parser.getReparsedCount());
+	}
+
+	/**
+	 * Test method for {@link parser.IncrementalParser#getReparsedCount()},
+	 * on a large program.
+	 */
+	@Test
+	public void testEditIsLocal() {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < 50000; i++) {
+			builder.append("forward dog").append(i).append(" * 2 // step\n");
+		}
+		for (int i = 0; i < 1000; i++) {
+			builder.append("def p").append(i).append(" {\nright 90\n}\n");
+		}
+		String text = builder.toString();
+		IncrementalParser parser = new IncrementalParser(text);
+		Tree<Token> before = parser.getTree();
+		assertEquals(50000, before.firstChild().numberOfChildren());
+
+		int offset = text.indexOf("dog25000 ");
+		text = text.substring(0, offset) + "(" + text.substring(offset, offset + 8) + " + 1)" + text.substring(offset + 8);
+		Tree<Token> after = parser.edit(text, offset, 8, 14);
+		assertEquals(2, parser.getReparsedCount());
+		assertEquals("+", after.firstChild().child(25000).firstChild().firstChild().getValue().getValue());
+		assertEquals("dog25000", before.firstChild().child(25000).firstChild().firstChild().getValue().getValue());
+		assertSame(before.firstChild().child(24998), after.firstChild().child(24998));
+		assertSame(before.firstChild().child(25001), after.firstChild().child(25001));
+		assertSame(before.lastChild().child(999), after.lastChild().child(999));
+	}
+
+	/**
+	 * Asserts that the tree is the one parsing the whole text gives, or null if that fails.
+	 */
+	private void assertSameTree(String text, Tree<Token> tree) {
+		Parser parser = new Parser(text);
+		try {
+			assertTrue(text, parser.isProgram());
+			assertEquals(text, parser.stack.peek(), tree);
+		} catch (SyntaxException e) {
+			assertNull(text, tree);
+		}
+	}
+}
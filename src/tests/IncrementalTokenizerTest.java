@@ -0,0 +1,115 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import tokenizer.IncrementalTokenizer;
+import tokenizer.TokenStream;
+
+/**
+ * @author Joopyo Hong
+ */
+public class IncrementalTokenizerTest {
+	Set<String> keywords = new HashSet<String>();
+
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@Before
+	public void setUp() throws Exception {
+		keywords.add("set");
+		keywords.add("forward");
+	}
+
+	/**
+	 * Test method for {@link tokenizer.IncrementalTokenizer#edit(CharSequence, int, int, int)}.
+	 */
+	@Test
+	public void testEdit() {
+		String text = "set dog 5\nforward dog // go\nright 90\n";
+		IncrementalTokenizer tokenizer = new IncrementalTokenizer(text, keywords);
+		assertSameTokens(text, tokenizer.getTokens());
+
+		// "dog" becomes "dogs" on line 2: only that line is scanned again
+		text = "set dog 5\nforward dogs // go\nright 90\n";
+		assertSameTokens(text, tokenizer.edit(text, 22, 0, 1));
+		assertEquals(2, tokenizer.getRelexedCount());
+
+		// joining lines 1 and 2
+		text = "set dog 5forward dogs // go\nright 90\n";
+		assertSameTokens(text, tokenizer.edit(text, 9, 1, 0));
+
+		// commenting out the rest
+		text = "set dog 5forward dogs // go\n//right 90\n";
+		assertSameTokens(text, tokenizer.edit(text, 28, 0, 2));
+
+		try {
+			tokenizer.edit(text, 0, 0, 1);
+			fail("Exception was expected");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	/**
+	 * Test method for {@link tokenizer.IncrementalTokenizer#edit(CharSequence, int, int, int)},
+	 * on random edits.
+	 */
+	@Test
+	public void testRandomEdits() {
+		String alphabet = "ab1.e+-/ \n{}set";
+		Random random = new Random(42);
+		String text = "set a 1\nforward a\n";
+		IncrementalTokenizer tokenizer = new IncrementalTokenizer(text, keywords);
+		for (int i = 0; i < 2000; i++) {
+			int offset = random.nextInt(text.length() + 1);
+			int removed = random.nextInt(Math.min(3, text.length() - offset) + 1);
+			StringBuilder inserted = new StringBuilder();
+			for (int j = random.nextInt(4); j > 0; j--) {
+				inserted.append(alphabet.charAt(random.nextInt(alphabet.length())));
+			}
+			text = text.substring(0, offset) + inserted + text.substring(offset + removed);
+			assertSameTokens(text, tokenizer.edit(text, offset, removed, inserted.length()));
+		}
+	}
+
+	/**
+	 * Test method for {@link tokenizer.IncrementalTokenizer#getRelexedCount()},
+	 * on a large program.
+	 */
+	@Test
+	public void testEditIsLocal() {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < 50000; i++) {
+			builder.append("forward dog").append(i).append(" * 2 // step\n");
+		}
+		String text = builder.toString();
+		IncrementalTokenizer tokenizer = new IncrementalTokenizer(text, keywords);
+
+		int offset = text.indexOf("dog25000 ");
+		text = text.substring(0, offset) + "{" + text.substring(offset);
+		TokenStream tokens = tokenizer.edit(text, offset, 0, 1);
+		assertEquals(2, tokenizer.getRelexedCount());
+		assertEquals(5 * 50000 + 1, tokens.size());
+		assertEquals("{", tokens.text(5 * 25000 + 1));
+		assertEquals("dog25000", tokens.text(5 * 25000 + 2));
+	}
+
+	/**
+	 * Asserts that the tokens are those the whole text is tokenized into.
+	 */
+	private void assertSameTokens(String text, TokenStream tokens) {
+		TokenStream expected = TokenStream.tokenize(text, keywords);
+		assertEquals(text, expected.size(), tokens.size());
+		for (int i = 0; i < tokens.size(); i++) {
+			assertEquals(text, expected.type(i), tokens.type(i));
+			assertEquals(text, expected.start(i), tokens.start(i));
+			assertEquals(text, expected.text(i), tokens.text(i));
+		}
+	}
+}
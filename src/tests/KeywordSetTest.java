@@ -0,0 +1,62 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import tokenizer.KeywordSet;
+
+/**
+ * @author Joopyo Hong
+ */
+public class KeywordSetTest {
+	String[] words = {"penup", "pendown", "home", "jump", "set", "repeat", "while", "if", "else",
+			"do", "forward", "right", "left", "face", "color", "def", "set"};
+
+	/**
+	 * Test method for {@link tokenizer.KeywordSet#contains(Object)}.
+	 */
+	@Test
+	public void testContains() {
+		KeywordSet keywords = new KeywordSet(words);
+		for (String word : words) {
+			assertTrue(keywords.contains(word));
+			assertTrue(keywords.contains(new String(word)));
+		}
+		assertFalse(keywords.contains("forwards"));
+		assertFalse(keywords.contains("Set"));
+		assertFalse(keywords.contains(""));
+		assertFalse(keywords.contains(null));
+		assertFalse(keywords.contains(42));
+		assertFalse(new KeywordSet().contains("set"));
+	}
+
+	/**
+	 * Test method for {@link tokenizer.KeywordSet#size()} and {@link tokenizer.KeywordSet#iterator()}.
+	 */
+	@Test
+	public void testSetView() {
+		KeywordSet keywords = new KeywordSet(words);
+		Set<String> expected = new HashSet<String>();
+		for (String word : words) {
+			expected.add(word);
+		}
+		assertEquals(expected.size(), keywords.size());
+		assertEquals(expected, keywords);
+		assertEquals(expected, new HashSet<String>(keywords));
+		
+		try {
+			keywords.add("pendown");
+			fail("Exception was expected");
+		} catch (UnsupportedOperationException e) {
+		}
+		try {
+			new KeywordSet("Aa", "BB"); // same hash code
+			fail("Exception was expected");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.util.NoSuchElementException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import parser.NodeStack;
+import tree.Tree;
+
+/**
+ * @author Joopyo Hong
+ */
+public class NodeStackTest {
+	NodeStack<String> stack;
+
+	/**
+	 * Set up before each test.
+	 */
+	@Before
+	public void setUp() {
+		stack = new NodeStack<String>();
+		stack.push(new Tree<String>("a"));
+		stack.push(new Tree<String>("+"));
+		stack.push(new Tree<String>("b"));
+	}
+
+	/**
+	 * Test method for {@link parser.NodeStack#push(Tree)}, {@link parser.NodeStack#pop()} and
+	 * {@link parser.NodeStack#peek()}.
+	 */
+	@Test
+	public void testPushPop() {
+		assertEquals(3, stack.size());
+		assertEquals(new Tree<String>("b"), stack.peek());
+		assertEquals(new Tree<String>("b"), stack.pop());
+		assertEquals(new Tree<String>("a"), stack.get(0));
+		for (int i = 0; i < 100; i++) {
+			stack.push(new Tree<String>("x" + i));
+		}
+		assertEquals(102, stack.size());
+		assertEquals(new Tree<String>("x99"), stack.peek());
+		stack.clear();
+		assertTrue(stack.isEmpty());
+		try {
+			stack.pop();
+			fail("Exception was expected");
+		} catch (NoSuchElementException e) {
+		}
+	}
+
+	/**
+	 * Test method for {@link parser.NodeStack#reduceBinary()}.
+	 */
+	@Test
+	public void testReduceBinary() {
+		stack.reduceBinary();
+		assertEquals(1, stack.size());
+		assertEquals(Tree.parse("+(a b)"), stack.peek());
+	}
+
+	/**
+	 * Test method for {@link parser.NodeStack#reduce(int)}.
+	 */
+	@Test
+	public void testReduce() {
+		stack.reduce(2);
+		assertEquals(Tree.parse("a(+ b)"), stack.peek());
+		stack.reduce(0);
+		assertEquals(1, stack.size());
+		try {
+			stack.reduce(1);
+			fail("Exception was expected");
+		} catch (NoSuchElementException e) {
+		}
+	}
+
+	/**
+	 * Test method for {@link parser.NodeStack#reduceInto(Tree, int)}.
+	 */
+	@Test
+	public void testReduceInto() {
+		stack.reduceInto(new Tree<String>("list"), 2);
+		assertEquals(2, stack.size());
+		assertEquals(Tree.parse("list(+ b)"), stack.peek());
+		stack.reduceInto(new Tree<String>("empty"), 0);
+		assertEquals(3, stack.size());
+		assertEquals(Tree.parse("empty"), stack.peek());
+	}
+
+	/**
+	 * Test method for {@link parser.NodeStack#equals(Object)} and {@link parser.NodeStack#toString()}.
+	 */
+	@Test
+	public void testEqualsAndToString() {
+		NodeStack<String> other = new NodeStack<String>();
+		assertNotEquals(stack, other);
+		other.push(new Tree<String>("a"));
+		other.push(new Tree<String>("+"));
+		other.push(new Tree<String>("b"));
+		assertEquals(stack, other);
+		assertEquals("[a\n, +\n, b\n]", stack.toString());
+	}
+}
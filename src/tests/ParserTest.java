@@ -2,11 +2,17 @@ package tests;
 
 import static org.junit.Assert.*;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.io.StringReader;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -14,6 +20,7 @@ import org.junit.Test;
 import parser.Parser;
 import parser.SyntaxException;
 import tokenizer.Token;
+import tokenizer.TokenStream;
 import tokenizer.Tokenizer;
 import tree.Tree;
 
@@ -43,6 +50,146 @@ public class ParserTest {
         parser = new Parser("2 + 2");
     }
 
+    /**
+     * Test method for {@link parser.Parser#reset(CharSequence)}.
+     */
+    @Test
+    public void testReset() {
+        String first = "set size 40\nrepeat 4 {\nforward size\nright 90\n}\n";
+        String second = "forward 10\ndo square 5\ndef square side {\nred\n}\n";
+        parser = new Parser("forward");
+        try {
+            parser.isProgram();
+            fail("Exception was expected");
+        } catch (SyntaxException e) {
+        }
+        
+        parser.reset(first);
+        assertTrue(parser.isProgram());
+        Parser fresh = new Parser(first);
+        assertTrue(fresh.isProgram());
+        assertEquals(fresh.stack, parser.stack);
+        
+        parser.reset(second);
+        assertTrue(parser.isProgram());
+        fresh = new Parser(second);
+        assertTrue(fresh.isProgram());
+        assertEquals(fresh.stack, parser.stack);
+        assertEquals(1, parser.stack.size());
+    }
+
+    /**
+     * Test method for {@link parser.Parser#setRecovering(boolean)}.
+     */
+    @Test
+    public void testRecovering() {
+        String program = "set size 40\nforward size +\nrepeat 4 {\nright\nforward 10\n}\ndog 5\n"
+                + "def square side {\nforward side side\n}\ndef 5 {\n}\ndef tri {\nright 120\n}\n";
+        use(program);
+        parser.setRecovering(true);
+        assertTrue(parser.isProgram());
+        assertStackTop(tree("program(block(set(size 40) repeat(4 block(forward(10)))) "
+                + "list(def(header(square list(side)) block) def(header(tri list) block(right(120)))))"));
+        
+        List<SyntaxException> errors = parser.getErrors();
+        int[][] places = {{2, 15}, {4, 6}, {7, 1}, {9, 14}, {11, 5}};
+        assertEquals(places.length, errors.size());
+        for (int i = 0; i < places.length; i++) {
+            assertEquals(places[i][0], errors.get(i).getLine());
+            assertEquals(places[i][1], errors.get(i).getColumn());
+        }
+        assertEquals("No <name> after 'def'", errors.get(4).getMessage());
+        
+        // stray brackets, and commands after the procedures
+        use("}\nforward 1\n}\nrepeat 2 x {\nhome\n}\ndef a {\nhome\n}\nhome\n}\n");
+        parser.setRecovering(true);
+        assertTrue(parser.isProgram());
+        assertStackTop(tree("program(block(forward(1)) list(def(header(a list) block(home))))"));
+        assertEquals(5, parser.getErrors().size());
+        
+        parser.reset(program);
+        assertTrue(parser.isProgram());
+        assertEquals(5, parser.getErrors().size());
+        
+        // without recovery, the first error ends parsing
+        use(program);
+        try {
+            parser.isProgram();
+            fail("Exception was expected");
+        } catch (SyntaxException e) {
+            assertEquals(2, e.getLine());
+            assertEquals(15, e.getColumn());
+        }
+        assertTrue(parser.getErrors().isEmpty());
+    }
+
+    /**
+     * Test method for {@link parser.Parser#parseProgram(TokenStream, ForkJoinPool)}.
+     */
+    @Test
+    public void testParseProgramInParallel() {
+        StringBuilder builder = new StringBuilder("set size 40\nrepeat 4 {\nforward size\n}\n");
+        for (int i = 0; i < 3000; i++) {
+            builder.append("def p").append(i).append(" a b {\nforward a * ").append(i).append("\nright b\n}\n");
+        }
+        String program = builder.toString();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        use(program);
+        assertTrue(parser.isProgram());
+        assertEquals(parser.stack.peek(), Parser.parseProgram(Parser.tokenize(program), pool));
+        
+        use("home\n");
+        assertTrue(parser.isProgram());
+        assertEquals(parser.stack.peek(), Parser.parseProgram(Parser.tokenize("home\n"), pool));
+        
+        // the error is the one isProgram() reports, wherever it is
+        String[] broken = {program.replace("def p2500 a", "def 2500 a"), program.replace("right b\n}\ndef p2", "right b\ndef p2"),
+                "home\ndef p a {\n}\nhome\n", "def p a {\n}\n", "home\n}\ndef p a {\n}\n"};
+        for (String text : broken) {
+            String message = null;
+            try {
+                new Parser(text).isProgram();
+            } catch (SyntaxException e) {
+                message = e.getMessage();
+            }
+            try {
+                Parser.parseProgram(Parser.tokenize(text), pool);
+                fail("Exception was expected");
+            } catch (SyntaxException e) {
+                assertEquals(message, e.getMessage());
+            }
+        }
+        pool.shutdown();
+    }
+
+    /**
+     * Test method for {@link parser.Parser#Parser(java.io.File)}.
+     */
+    @Test
+    public void testParserFromFile() throws IOException {
+        String program = "set size 40\nrepeat 4 {\nforward size // side\nright 90\n}\n";
+        File file = File.createTempFile("parser", ".logo");
+        file.deleteOnExit();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        writer.write(program);
+        writer.close();
+        
+        parser = new Parser(file);
+        assertTrue(parser.isProgram());
+        Tree<Token> fromFile = parser.stack.peek();
+        use(program);
+        assertTrue(parser.isProgram());
+        assertEquals(parser.stack.peek(), fromFile);
+        
+        writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        writer.write("set caf\u00e9 40\n");
+        writer.close();
+        parser = new Parser(file);
+        assertTrue(parser.getTokenizer().next().getValue().equals("set"));
+        assertEquals("caf", parser.getTokenizer().next().getValue());
+        assertEquals("\u00e9", parser.getTokenizer().next().getValue());
+    }
+
     /**
      * Test method for {@link parser.Parser#getTokenizer()}. 
      */
@@ -160,6 +307,33 @@ public class ParserTest {
         assertTrue(parser.isCommand());
         assertStackTop(tree("do(john list(+(*(8 j) *(9 56)) 13))"));
     }
+    
+    /**
+     * Test method for {@link parser.Parser#isCommand()}, on tokens that
+     * cannot start a command: nothing may be consumed.
+     */
+    @Test
+    public void testIsCommandLeavesNonCommands() {
+        use("else {\n");
+        assertFalse(parser.isCommand());
+        assertTrue(parser.stack.isEmpty());
+        assertEquals("else", parser.getTokenizer().next().getValue());
+        use("def square {\n");
+        assertFalse(parser.isCommand());
+        assertEquals("def", parser.getTokenizer().next().getValue());
+        use("dog 5\n");
+        assertFalse(parser.isCommand());
+        assertFalse(parser.isMove());
+        assertFalse(parser.isColor());
+        assertEquals("dog", parser.getTokenizer().next().getValue());
+        use("");
+        assertFalse(parser.isCommand());
+        use("tan\nface 90\n");
+        assertTrue(parser.isCommand());
+        assertStackTop(tree("color(210 180 140)"));
+        assertTrue(parser.isCommand());
+        assertStackTop(tree("face(90)"));
+    }
     /**
      * Test method for {@link parser.Parser#isProcedure()}. 
      */
@@ -382,6 +556,44 @@ public class ParserTest {
         assertStackTop(tree("/(+(-(foo) 3) bar)"));
     }
 
+    /**
+     * Test method for {@link parser.Parser#isExpression()}, on deeply nested
+     * parentheses and unary signs.
+     */
+    @Test
+    public void testDeeplyNestedExpression() {
+        int depth = 100000;
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            builder.append("-(");
+        }
+        builder.append("x * 2");
+        for (int i = 0; i < depth; i++) {
+            builder.append(')');
+        }
+        use(builder + " + 1\n");
+        assertTrue(parser.isExpression());
+        assertEquals(1, parser.stack.size());
+
+        Tree<Token> node = parser.stack.peek();
+        assertEquals("+", node.getValue().getValue());
+        node = node.firstChild();
+        for (int i = 0; i < depth; i++) {
+            assertEquals("-", node.getValue().getValue());
+            assertEquals(1, node.numberOfChildren());
+            node = node.firstChild();
+        }
+        assertEquals("*", node.getValue().getValue());
+        assertTrue(parser.isEol());
+
+        use(builder.substring(0, 2 * depth) + "\n");
+        try {
+            parser.isExpression();
+            fail("Exception was expected");
+        } catch (SyntaxException e) {
+        }
+    }
+
     /**
      * Test method for {@link parser.Parser#isTerm()}. 
      */
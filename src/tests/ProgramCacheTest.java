@@ -0,0 +1,159 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import parser.FlatTree;
+import parser.Parser;
+import parser.ProgramCache;
+import parser.SyntaxException;
+import tokenizer.Token;
+import tree.Tree;
+
+/**
+ * @author Joopyo Hong
+ */
+public class ProgramCacheTest {
+	private static final String PROGRAM = "set dog 5.50\nforward dog * -(2 + 3e2)\nred\n"
+			+ "if dog > 4 {\nhome\n}\nelse {\ndo square 10 dog\n}\n"
+			+ "def square side n {\nrepeat 4 {\nforward side\nright 90\n}\n}\n";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Test method for {@link parser.ProgramCache#loadOrParse()}.
+	 */
+	@Test
+	public void testLoadOrParse() throws IOException {
+		File source = write("star.logo", PROGRAM);
+		ProgramCache cache = new ProgramCache(source);
+		assertEquals(new File(folder.getRoot(), "star.logoc"), cache.getCompiledFile());
+		assertNull(cache.load());
+
+		FlatTree parsed = cache.loadOrParse();
+		assertEquals(parse(PROGRAM), parsed.toTree());
+		assertTrue(cache.getCompiledFile().isFile());
+
+		FlatTree loaded = new ProgramCache(source).load();
+		assertNotNull(loaded);
+		assertEquals(parse(PROGRAM), loaded.toTree());
+		assertEquals(parsed.size(), loaded.size());
+		assertEquals(5.5, loaded.number(loaded.child(loaded.child(loaded.child(0, 0), 0), 1)), 0);
+		assertEquals("5.50", loaded.text(loaded.child(loaded.child(loaded.child(0, 0), 0), 1)));
+	}
+
+	/**
+	 * Test method for {@link parser.ProgramCache#load()}, after the program
+	 * has changed.
+	 */
+	@Test
+	public void testStale() throws IOException {
+		File source = write("star.logo", PROGRAM);
+		new ProgramCache(source).loadOrParse();
+		String changed = PROGRAM.replace("right 90", "right 72");
+		write("star.logo", changed);
+		ProgramCache cache = new ProgramCache(source);
+		assertNull(cache.load());
+		assertEquals(parse(changed), cache.loadOrParse().toTree());
+		assertEquals(parse(changed), new ProgramCache(source).load().toTree());
+
+		write("star.logo", "forward\n");
+		try {
+			new ProgramCache(source).loadOrParse();
+			fail("Exception was expected");
+		} catch (SyntaxException e) {
+		}
+	}
+
+	/**
+	 * Test method for {@link parser.ProgramCache#load()}, on damaged
+	 * compiled files.
+	 */
+	@Test
+	public void testDamaged() throws IOException {
+		File source = write("star.logo", PROGRAM);
+		ProgramCache cache = new ProgramCache(source);
+		cache.loadOrParse();
+		File compiled = cache.getCompiledFile();
+		byte[] bytes = Files.readAllBytes(compiled.toPath());
+
+		// cut short
+		RandomAccessFile file = new RandomAccessFile(compiled, "rw");
+		file.setLength(bytes.length - 3);
+		file.close();
+		assertNull(cache.load());
+
+		// another version
+		bytes[7]++;
+		Files.write(compiled.toPath(), bytes);
+		assertNull(cache.load());
+		bytes[7]--;
+
+		// a bad literal index in the last node
+		bytes[bytes.length - 2] = 100;
+		Files.write(compiled.toPath(), bytes);
+		assertNull(cache.load());
+
+		// not a compiled file at all
+		Files.write(compiled.toPath(), PROGRAM.getBytes(StandardCharsets.US_ASCII));
+		assertNull(cache.load());
+		assertEquals(parse(PROGRAM), cache.loadOrParse().toTree());
+		assertNotNull(cache.load());
+	}
+
+	/**
+	 * Test method for {@link parser.ProgramCache#load()}, on compiled files
+	 * whose counts are far larger than the data that follows them.
+	 */
+	@Test
+	public void testHugeCount() throws IOException {
+		File source = write("star.logo", PROGRAM);
+		ProgramCache cache = new ProgramCache(source);
+		cache.loadOrParse();
+		File compiled = cache.getCompiledFile();
+		byte[] header = Arrays.copyOf(Files.readAllBytes(compiled.toPath()), 72); // magic, version, key
+		byte[] huge = { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07 }; // 0x7FFFFFFF
+
+		// names, the length of a name, literals, nodes
+		byte[][] prefixes = { {}, { 1 }, { 0 }, { 0, 0 } };
+		for (byte[] prefix : prefixes) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			bytes.write(header);
+			bytes.write(prefix);
+			bytes.write(huge);
+			bytes.write(new byte[100]);
+			Files.write(compiled.toPath(), bytes.toByteArray());
+			assertNull(cache.load());
+		}
+	}
+
+	/**
+	 * Writes a file in the temporary folder.
+	 */
+	private File write(String name, String text) throws IOException {
+		File file = new File(folder.getRoot(), name);
+		Files.write(file.toPath(), text.getBytes(StandardCharsets.US_ASCII));
+		return file;
+	}
+
+	/**
+	 * Parses a program.
+	 */
+	private static Tree<Token> parse(String text) {
+		Parser parser = new Parser(text);
+		assertTrue(parser.isProgram());
+		return parser.stack.peek();
+	}
+}
@@ -0,0 +1,138 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import interpreter.StreamingProgram;
+import parser.Parser;
+import parser.ProgramListener;
+import parser.SyntaxException;
+import tokenizer.Token;
+import tree.Tree;
+
+/**
+ * @author Joopyo Hong
+ */
+public class StreamingProgramTest {
+
+	/**
+	 * Test method for {@link interpreter.StreamingProgram#parse(Parser)}.
+	 */
+	@Test
+	public void testParse() throws InterruptedException {
+		String text = "forward 10\ndo square 5\nright 90\ndef square side {\nforward side\n}\n";
+		StreamingProgram program = new StreamingProgram();
+		program.parse(new Parser(text));
+
+		Parser parser = new Parser(text);
+		assertTrue(parser.isProgram());
+		Tree<Token> block = parser.stack.peek().child(0);
+		for (int i = 0; i < block.numberOfChildren(); i++) {
+			assertEquals(block.child(i), program.nextCommand());
+		}
+		assertNull(program.nextCommand());
+		assertNull(program.nextCommand());
+		assertEquals(parser.stack.peek().child(1).child(0), program.awaitProcedure("square"));
+		assertNull(program.awaitProcedure("circle"));
+	}
+
+	/**
+	 * Test method for {@link interpreter.StreamingProgram#awaitProcedure(String)},
+	 * while the program is being parsed.
+	 */
+	@Test
+	public void testAwaitProcedure() throws InterruptedException {
+		final StreamingProgram program = new StreamingProgram();
+		final Parser parser = new Parser("do square 5\ndef square side {\nforward side\n}\n");
+		final CountDownLatch commandTaken = new CountDownLatch(1);
+		final Tree<Token>[] procedure = newArray();
+
+		Thread interpreter = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					program.nextCommand();
+					commandTaken.countDown();
+					procedure[0] = program.awaitProcedure("square");
+				} catch (InterruptedException e) {
+				}
+			}
+		});
+		interpreter.start();
+
+		program.command(new Tree<Token>(Token.keyword("home")));
+		assertTrue(commandTaken.await(10, TimeUnit.SECONDS));
+		Thread.sleep(50);
+		assertTrue(interpreter.isAlive()); // waiting for the procedure
+		program.parse(parser);
+		interpreter.join(10000);
+		assertFalse(interpreter.isAlive());
+		assertEquals("square", procedure[0].child(0).child(0).getValue().getValue());
+	}
+
+	/**
+	 * Test method for {@link interpreter.StreamingProgram#nextCommand()},
+	 * on a program with a syntax error.
+	 */
+	@Test
+	public void testSyntaxError() throws InterruptedException {
+		StreamingProgram program = new StreamingProgram();
+		program.parse(new Parser("forward 10\nright\nhome\n"));
+		assertEquals("forward", program.nextCommand().getValue().getValue());
+		try {
+			program.nextCommand();
+			fail("Exception was expected");
+		} catch (SyntaxException e) {
+			assertEquals(2, e.getLine());
+		}
+		try {
+			program.awaitProcedure("square");
+			fail("Exception was expected");
+		} catch (SyntaxException e) {
+		}
+	}
+
+	/**
+	 * Test method for {@link interpreter.StreamingProgram#parse(Parser)},
+	 * with a parser that fails with an Error rather than an exception.
+	 */
+	@Test
+	public void testParserError() throws InterruptedException {
+		StreamingProgram program = new StreamingProgram();
+		Parser parser = new Parser("forward 10\n") {
+			@Override
+			public boolean isProgram(ProgramListener listener) {
+				listener.command(new Tree<Token>(Token.keyword("home")));
+				throw new StackOverflowError();
+			}
+		};
+		try {
+			program.parse(parser);
+			fail("Error was expected");
+		} catch (StackOverflowError e) {
+		}
+		assertEquals("home", program.nextCommand().getValue().getValue());
+		try {
+			program.nextCommand();
+			fail("Error was expected");
+		} catch (StackOverflowError e) {
+		}
+		try {
+			program.awaitProcedure("square");
+			fail("Error was expected");
+		} catch (StackOverflowError e) {
+		}
+	}
+
+	/**
+	 * Creates an array for one Tree.
+	 */
+	@SuppressWarnings("unchecked")
+	private static Tree<Token>[] newArray() {
+		return (Tree<Token>[]) new Tree<?>[1];
+	}
+}
@@ -0,0 +1,141 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.io.StringReader;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import parser.Parser;
+import tokenizer.Token;
+import tokenizer.TokenStream;
+import tokenizer.TokenType;
+import tokenizer.Tokenizer;
+
+/**
+ * @author Joopyo Hong
+ */
+public class TokenStreamTest {
+	Set<String> keywords = new HashSet<String>();
+	String text = "set dog 7.5e+2d // comment\n  forward dog * 2.\n\tdog / .  $x\n// trailing";
+
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@Before
+	public void setUp() throws Exception {
+		keywords.add("set");
+		keywords.add("forward");
+	}
+
+	/**
+	 * Test method for {@link tokenizer.TokenStream#tokenize(CharSequence, Set)}.
+	 */
+	@Test
+	public void testTokenize() {
+		TokenStream stream = TokenStream.tokenize(text, keywords);
+		Tokenizer tokenizer = new Tokenizer(new StringReader(text), keywords);
+		
+		int i = 0;
+		while (tokenizer.hasNext()) {
+			Token expected = tokenizer.next();
+			assertEquals(expected.getType(), stream.type(i));
+			assertEquals(expected.getValue(), stream.text(i));
+			assertTrue(stream.textEquals(i, expected.getValue()));
+			assertEquals(expected, stream.token(i));
+			i++;
+		}
+		assertEquals(i, stream.size());
+		
+		assertEquals(TokenType.KEYWORD, stream.type(0));
+		assertEquals(4, stream.start(1));
+		assertEquals(3, stream.length(1));
+		assertEquals("7.5e+2d", stream.text(2));
+	}
+
+	/**
+	 * Test method for {@link tokenizer.TokenStream#tokenize(CharSequence, Set, ForkJoinPool)}.
+	 */
+	@Test
+	public void testTokenizeInParallel() {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; builder.length() < 3 * TokenStream.PARALLEL_THRESHOLD; i++) {
+			builder.append(text).append(" dog").append(i % 100).append('\n');
+		}
+		String source = builder.toString();
+		TokenStream expected = TokenStream.tokenize(source, keywords);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			TokenStream stream = TokenStream.tokenize(source, keywords, pool);
+			assertEquals(expected.size(), stream.size());
+			assertEquals(expected.getSymbols().size(), stream.getSymbols().size());
+			for (int i = 0; i < stream.size(); i++) {
+				assertEquals(expected.type(i), stream.type(i));
+				assertEquals(expected.start(i), stream.start(i));
+				assertEquals(expected.length(i), stream.length(i));
+				assertEquals(expected.text(i), stream.text(i));
+			}
+			assertEquals(TokenStream.tokenize(text, keywords).size(), TokenStream.tokenize(text, keywords, pool).size());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Test method for {@link tokenizer.TokenStream#id(int)}.
+	 */
+	@Test
+	public void testId() {
+		TokenStream stream = TokenStream.tokenize("dog cat dog 5 + dog", keywords);
+		assertEquals(stream.id(0), stream.id(2));
+		assertEquals(stream.id(0), stream.id(5));
+		assertNotEquals(stream.id(0), stream.id(1));
+		assertEquals(-1, stream.id(3));
+		assertEquals(-1, stream.id(4));
+		assertEquals(2, stream.getSymbols().size());
+		assertEquals("dog", stream.getSymbols().name(stream.id(0)));
+		assertEquals("dog".hashCode(), stream.getSymbols().hash(stream.id(0)));
+	}
+
+	/**
+	 * Test method for {@link tokenizer.TokenStream.Cursor}.
+	 */
+	@Test
+	public void testCursor() {
+		TokenStream stream = TokenStream.tokenize("forward 10\n", keywords);
+		TokenStream.Cursor cursor = stream.cursor();
+		
+		assertTrue(cursor.matches(TokenType.KEYWORD, "forward"));
+		assertFalse(cursor.matches(TokenType.NAME, "forward"));
+		cursor.advance();
+		assertEquals(TokenType.NUMBER, cursor.type());
+		assertEquals(new Token(TokenType.NUMBER, "10"), cursor.next());
+		assertEquals(new Token(TokenType.EOL, "\n"), cursor.next());
+		assertFalse(cursor.hasNext());
+		assertFalse(cursor.matches(TokenType.EOL, "\n"));
+		
+		cursor = stream.cursor(1, 2);
+		assertEquals(1, cursor.index());
+		cursor.advance();
+		assertFalse(cursor.hasNext());
+	}
+
+	/**
+	 * Test method for {@link parser.Parser#Parser(TokenStream)}.
+	 */
+	@Test
+	public void testParserOverStream() {
+		String program = "set dog 5\nrepeat 4 {\nforward -dog * (2 + dog)\nright 90\n}\ndo square 3\n" +
+				"def square size {\nred\n}\n";
+		Parser fromText = new Parser(program);
+		Parser fromTokens = new Parser(Parser.tokenize(program));
+		assertTrue(fromText.isProgram());
+		assertTrue(fromTokens.isProgram());
+		assertEquals(fromText.stack.peek(), fromTokens.stack.peek());
+		assertEquals(fromText.stack.peek().toString(), fromTokens.stack.peek().toString());
+	}
+}
@@ -69,6 +69,20 @@ public class TokenTest {
 		assertEquals(toke4.getType(), TokenType.NUMBER);
 	}
 
+	/**
+	 * Test method for {@link tokenizer.Token#getNumber()}.
+	 */
+	@Test
+	public void testGetNumber() {
+		assertEquals(123, toke1.getNumber(), 0);
+		assertEquals(321, toke2.getNumber(), 0);
+		assertTrue(Double.isNaN(toke5.getNumber()));
+		assertEquals(750, new Token(TokenType.NUMBER, "7.5e+2d").getNumber(), 0);
+		assertEquals(0.1, new Token(TokenType.NUMBER, ".1").getNumber(), 0);
+		assertEquals(5, new Token(TokenType.NUMBER, "5L").getNumber(), 0);
+		assertEquals(2.5, new Token(TokenType.NUMBER, "x", 2.5).getNumber(), 0);
+	}
+
 	/**
 	 * Test method for {@link tokenizer.Token#equals(java.lang.Object)}.
 	 */
@@ -7,6 +7,7 @@ import static org.junit.Assert.*;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
+import java.nio.CharBuffer;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -129,6 +130,157 @@ public class TokenizerTest {
         }
 	}
 
+	/**
+	 * Test method for {@link tokenizer.Tokenizer#Tokenizer(CharSequence, int, int, Set)}.
+	 *   
+	 */
+	@Test
+	public void testTokenizerOverBuffer()  {
+		char[] chars = "xx abstract 7.5e+2d .d\nyy".toCharArray();
+		tokenizer = new Tokenizer(CharBuffer.wrap(chars), 3, chars.length - 2, keywords);
+		
+		assertEquals(new Token(TokenType.KEYWORD, "abstract"), tokenizer.next());
+		assertEquals(new Token(TokenType.NUMBER, "7.5e+2d"), tokenizer.next());
+		assertEquals(".", tokenizer.next().getValue());
+		assertEquals("d", tokenizer.next().getValue());
+		assertEquals(TokenType.EOL, tokenizer.next().getType());
+		assertFalse(tokenizer.hasNext());
+		
+		try {
+			new Tokenizer("abc", 2, 4, keywords);
+			fail("Exception was expected");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	/**
+	 * Test method for {@link tokenizer.Tokenizer#hasNext()}: on comment- and
+	 * slash-heavy input, with the parser's habit of asking hasNext() several times
+	 * per token, the number of characters examined grows linearly with the input.
+	 */
+	/**
+	 * Test method for {@link tokenizer.Tokenizer#peek(int)}.
+	 *   
+	 */
+	@Test
+	public void testPeek()  {
+		tokenizer = new Tokenizer(new StringReader("abstract x 12 { // note\n}"), keywords);
+		assertEquals(new Token(TokenType.SYMBOL, "}"), tokenizer.peek(5));
+		assertNull(tokenizer.peek(6));
+		assertEquals(new Token(TokenType.NUMBER, "12"), tokenizer.peek(2));
+		assertEquals(new Token(TokenType.KEYWORD, "abstract"), tokenizer.peek(0));
+		assertEquals(TokenType.KEYWORD, tokenizer.next().getType());
+		assertTrue(tokenizer.nextMatches(TokenType.NAME, "x"));
+		assertEquals(12, tokenizer.peek(1).getNumber(), 0);
+		
+		assertEquals("x", tokenizer.next().getValue());
+		tokenizer.pushBack();
+		assertEquals("x", tokenizer.peek(0).getValue());
+		assertEquals("12", tokenizer.peek(1).getValue());
+		assertEquals("x", tokenizer.next().getValue());
+		assertEquals("12", tokenizer.next().getValue());
+		assertEquals("{", tokenizer.next().getValue());
+		assertEquals(TokenType.EOL, tokenizer.peek(0).getType());
+		assertEquals(TokenType.EOL, tokenizer.next().getType());
+		assertEquals("}", tokenizer.next().getValue());
+		assertNull(tokenizer.peek(0));
+		assertFalse(tokenizer.hasNext());
+		
+		try {
+			tokenizer.peek(Tokenizer.LOOKAHEAD);
+			fail("Exception was expected");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+	
+	/**
+	 * Test method for {@link tokenizer.Tokenizer#next()}, on numbers.
+	 *   
+	 */
+	@Test
+	public void testNumbers()  {
+		tokenizer = new Tokenizer(new StringReader("0.1 7.5e+2d 12f 3l .e5 123456789012345678"), keywords);
+		assertEquals(0.1, tokenizer.next().getNumber(), 0);
+		assertEquals(750, tokenizer.next().getNumber(), 0);
+		assertEquals(12, tokenizer.next().getNumber(), 0);
+		assertEquals(3, tokenizer.next().getNumber(), 0);
+		Token error = tokenizer.next();
+		assertEquals(TokenType.ERROR, error.getType());
+		assertEquals(".e5", error.getValue());
+		assertEquals(123456789012345678.0, tokenizer.next().getNumber(), 0);
+		assertFalse(tokenizer.hasNext());
+	}
+	
+	/**
+	 * Test method for {@link tokenizer.Tokenizer#next()}, on repeated tokens.
+	 *   
+	 */
+	@Test
+	public void testTokensAreShared()  {
+		tokenizer = new Tokenizer(new StringReader("abstract dog {\nabstract dog {\n"), keywords);
+		Token[] first = new Token[4];
+		for (int i = 0; i < first.length; i++) {
+			first[i] = tokenizer.next();
+		}
+		for (int i = 0; i < first.length; i++) {
+			assertSame(first[i], tokenizer.next());
+		}
+		assertFalse(tokenizer.hasNext());
+		
+		assertSame(Token.keyword("abstract"), first[0]);
+		assertEquals(TokenType.NAME, first[1].getType());
+		assertSame(Token.symbol('{'), first[2]);
+		assertSame(Token.NEWLINE, first[3]);
+	}
+	
+	@Test
+	public void testHasNextIsLinear()  {
+		long small = charactersExamined(1000);
+		long large = charactersExamined(8000);
+		assertTrue("quadratic lookahead: " + small + " vs " + large, large <= 8 * small + 100);
+		assertTrue(large <= 3L * commentDense(8000).length());
+	}
+	
+	/**
+	 * Tokenizes the given number of comment-dense lines and counts how often
+	 * the tokenizer looked at a character.
+	 */
+	private long charactersExamined(int lines) {
+		final String text = commentDense(lines);
+		final long[] count = new long[1];
+		CharSequence counted = new CharSequence() {
+			public char charAt(int index) {
+				count[0]++;
+				return text.charAt(index);
+			}
+			public int length() {
+				return text.length();
+			}
+			public CharSequence subSequence(int start, int end) {
+				return text.substring(start, end);
+			}
+		};
+		tokenizer = new Tokenizer(counted, 0, text.length(), keywords);
+		while (tokenizer.hasNext()) {
+			tokenizer.hasNext();
+			tokenizer.hasNext();
+			tokenizer.next();
+		}
+		return count[0];
+	}
+	
+	/**
+	 * Builds a program text of the given number of lines, full of slashes and comments.
+	 */
+	private String commentDense(int lines) {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < lines; i++) {
+			text.append("a / b / c // a comment / with / / slashes // and more\n");
+			text.append("    // nothing but a comment ////////////////////////\n");
+		}
+		return text.append("// trailing comment / without a newline").toString();
+	}
+
 	/**
 	 * Test method for {@link tokenizer.Tokenizer#pushBack()}.
 	 *   
@@ -0,0 +1,117 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.util.Iterator;
+
+import org.junit.Test;
+
+import parser.Parser;
+import tokenizer.Token;
+import tree.Tree;
+import tree.TreeInterner;
+
+/**
+ * @author Joopyo Hong
+ */
+public class TreeInternerTest {
+
+	/**
+	 * Test method for {@link tree.TreeInterner#intern(Tree)}.
+	 */
+	@Test
+	public void testIntern() {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			text.append("repeat 5 {\nforward size\nright 144\n}\n");
+		}
+		text.append("def star size {\nrepeat 5 {\nforward size\nright 144\n}\n}\n");
+		Parser parser = new Parser(text.toString());
+		assertTrue(parser.isProgram());
+		Tree<Token> tree = parser.stack.peek();
+
+		TreeInterner<Token> interner = new TreeInterner<Token>();
+		Tree<Token> shared = interner.intern(tree);
+		assertEquals(tree, shared);
+		assertEquals(shared, tree);
+		assertEquals(tree.hashCode(), shared.hashCode());
+		assertTrue(shared.isShared());
+		assertFalse(tree.isShared());
+
+		// every repeat is the same node, in the program and in the procedure
+		Tree<Token> block = shared.child(0);
+		for (int i = 1; i < 100; i++) {
+			assertSame(block.child(0), block.child(i));
+		}
+		assertSame(block.child(0), shared.child(1).child(0).child(1).child(0));
+
+		// program, block, list, def, header, star, list, block, and the shared repeat:
+		// repeat, 5, block, forward, size (also the parameter), right, 144
+		assertEquals(15, interner.getSharedCount());
+		assertEquals(3 + 100 * 7 + 6 + 7, interner.getNodeCount());
+		assertEquals(interner.getNodeCount() - 15, interner.getSavedCount());
+
+		// interning again shares everything
+		assertSame(shared, interner.intern(tree));
+		assertSame(shared, interner.intern(shared));
+		assertEquals(15, interner.getSharedCount());
+	}
+
+	/**
+	 * Test method for {@link tree.TreeInterner#intern(Tree)}, on a tree
+	 * too deep for recursion.
+	 */
+	@Test
+	public void testDeepTree() {
+		Tree<String> tree = new Tree<String>("leaf");
+		for (int i = 0; i < 100000; i++) {
+			tree = new Tree<String>(i % 2 == 0 ? "a" : "b", tree);
+		}
+		TreeInterner<String> interner = new TreeInterner<String>();
+		Tree<String> shared = interner.intern(tree);
+		assertEquals(100001, interner.getSharedCount());
+		for (int i = 0; i < 100000; i++) {
+			assertEquals(tree.getValue(), shared.getValue());
+			tree = tree.child(0);
+			shared = shared.child(0);
+		}
+		assertEquals("leaf", shared.getValue());
+	}
+
+	/**
+	 * Tests that shared trees cannot be changed.
+	 */
+	@Test
+	public void testSharedTreesAreImmutable() {
+		TreeInterner<String> interner = new TreeInterner<String>();
+		Tree<String> shared = interner.intern(Tree.parse("a(b c(d))"));
+		try {
+			shared.setValue("x");
+			fail("Exception was expected");
+		} catch (UnsupportedOperationException e) {
+		}
+		try {
+			shared.child(1).addChild(new Tree<String>("e"));
+			fail("Exception was expected");
+		} catch (UnsupportedOperationException e) {
+		}
+		try {
+			shared.removeChild(0);
+			fail("Exception was expected");
+		} catch (UnsupportedOperationException e) {
+		}
+		Iterator<Tree<String>> children = shared.children();
+		children.next();
+		try {
+			children.remove();
+			fail("Exception was expected");
+		} catch (UnsupportedOperationException e) {
+		}
+		assertEquals(Tree.parse("a(b c(d))"), shared);
+
+		// an unshared tree may still hold shared subtrees
+		Tree<String> tree = new Tree<String>("x", shared);
+		tree.addChild(shared.child(1));
+		assertEquals(Tree.parse("x(a(b c(d)) c(d))"), tree);
+	}
+}
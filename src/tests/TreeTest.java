@@ -2,7 +2,14 @@ package tests;
 
 import static org.junit.Assert.*;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -165,12 +172,224 @@ public class TreeTest {
 		assertNotEquals(tree9, tree6);
 	}
 	
+	/**
+	 * Tests preorder.
+	 */
+	@Test
+	public void preorderTest() {
+		Iterator<Tree<Integer>> nodes = tree54.preorder();
+		int[] values = {54, 1, 6, 3, 2, 1, 1, 9, 3, 3};
+		for (int value : values) {
+			assertTrue(nodes.hasNext());
+			assertEquals(value, (int)nodes.next().getValue());
+		}
+		assertFalse(nodes.hasNext());
+		try {
+			nodes.next();
+			fail("Should have thrown an exception");
+		} catch (NoSuchElementException e) {
+		}
+		
+		nodes = tree1a.preorder();
+		assertSame(tree1a, nodes.next());
+		assertFalse(nodes.hasNext());
+	}
+	
+	/**
+	 * Tests postorder.
+	 */
+	@Test
+	public void postorderTest() {
+		Iterator<Tree<Integer>> nodes = tree54.postorder();
+		int[] values = {1, 3, 2, 1, 1, 6, 3, 3, 9, 54};
+		for (int value : values) {
+			assertTrue(nodes.hasNext());
+			assertEquals(value, (int)nodes.next().getValue());
+		}
+		assertFalse(nodes.hasNext());
+		try {
+			nodes.next();
+			fail("Should have thrown an exception");
+		} catch (NoSuchElementException e) {
+		}
+		
+		nodes = tree1a.postorder();
+		assertSame(tree1a, nodes.next());
+		assertFalse(nodes.hasNext());
+	}
+	
+	/**
+	 * Tests stream and parallelStream.
+	 */
+	@Test
+	public void streamTest() {
+		List<Integer> values = Arrays.asList(54, 1, 6, 3, 2, 1, 1, 9, 3, 3);
+		assertEquals(values, tree54.stream().map(Tree::getValue).collect(Collectors.toList()));
+		assertEquals(values, tree54.parallelStream().map(Tree::getValue).collect(Collectors.toList()));
+		assertEquals(1, tree1a.stream().count());
+		
+		Tree<Integer> big = randomTree(new Random(54), 100000);
+		List<Tree<Integer>> nodes = new ArrayList<Tree<Integer>>();
+		for (Iterator<Tree<Integer>> iterator = big.preorder(); iterator.hasNext();) {
+			nodes.add(iterator.next());
+		}
+		assertEquals(100000, nodes.size());
+		assertEquals(nodes, big.parallelStream().collect(Collectors.toList()));
+		assertEquals(nodes.stream().mapToLong(Tree::getValue).sum(),
+				big.parallelStream().mapToLong(Tree::getValue).sum());
+	}
+	
+	/**
+	 * Tests spliterator, split down to single nodes.
+	 */
+	@Test
+	public void spliteratorTest() {
+		Tree<Integer> big = randomTree(new Random(6), 2000);
+		Tree<Integer> chain = new Tree<Integer>(0);
+		for (int i = 1; i < 200; i++) {
+			chain = new Tree<Integer>(i, chain, new Tree<Integer>(-i));
+		}
+		for (Tree<Integer> tree : Arrays.asList(tree1a, tree54, big, chain)) {
+			List<Tree<Integer>> expected = new ArrayList<Tree<Integer>>();
+			for (Iterator<Tree<Integer>> iterator = tree.preorder(); iterator.hasNext();) {
+				expected.add(iterator.next());
+			}
+			final List<Tree<Integer>> actual = new ArrayList<Tree<Integer>>();
+			split(tree.spliterator(), actual);
+			assertEquals(expected.size(), actual.size());
+			for (int i = 0; i < expected.size(); i++) {
+				assertSame(expected.get(i), actual.get(i));
+			}
+		}
+		
+		// a root and its first children, then the others; no splits within a subtree
+		Spliterator<Tree<Integer>> spliterator = tree54.spliterator();
+		Spliterator<Tree<Integer>> prefix = spliterator.trySplit();
+		assertNotNull(prefix);
+		assertTrue(prefix.tryAdvance(node -> assertSame(tree54, node)));
+		assertTrue(prefix.tryAdvance(node -> assertSame(tree1a, node)));
+		assertTrue(spliterator.tryAdvance(node -> assertSame(tree6, node)));
+		assertNull(spliterator.trySplit());
+		assertFalse(prefix.tryAdvance(node -> fail()));
+		List<Tree<Integer>> rest = new ArrayList<Tree<Integer>>();
+		spliterator.forEachRemaining(rest::add);
+		assertEquals(Arrays.asList(tree3a, tree2, tree1b, tree1c, tree9, tree3b, tree3c), rest);
+	}
+	
+	/**
+	 * Splits a spliterator as far as it goes, and collects the nodes of the
+	 * parts in order.
+	 */
+	private static void split(Spliterator<Tree<Integer>> spliterator, List<Tree<Integer>> nodes) {
+		Spliterator<Tree<Integer>> prefix = spliterator.trySplit();
+		if (prefix == null) {
+			spliterator.forEachRemaining(nodes::add);
+		} else {
+			split(prefix, nodes);
+			split(spliterator, nodes);
+		}
+	}
+	
+	/**
+	 * Builds a random tree of the given size, whose values are the node numbers.
+	 */
+	private static Tree<Integer> randomTree(Random random, int size) {
+		List<Tree<Integer>> nodes = new ArrayList<Tree<Integer>>();
+		nodes.add(new Tree<Integer>(0));
+		for (int i = 1; i < size; i++) {
+			Tree<Integer> node = new Tree<Integer>(i);
+			nodes.get(random.nextInt(Math.min(i, 50)) + Math.max(0, i - 50)).addChildUnchecked(node);
+			nodes.add(node);
+		}
+		return nodes.get(0);
+	}
+	
+	/**
+	 * Tests equals, hashCode, contains (through addChild), parse and the
+	 * iterators on trees too deep for recursion.
+	 */
+	@Test
+	public void deepTreeTest() {
+		int depth = 200000;
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < depth; i++) {
+			text.append(i % 10).append('(');
+		}
+		text.append("leaf");
+		for (int i = 0; i < depth; i++) {
+			text.append(')');
+		}
+		Tree<String> deep1 = Tree.parse(text.toString());
+		Tree<String> deep2 = Tree.parse(text.toString());
+		assertEquals(deep1, deep2);
+		assertEquals(deep1.hashCode(), deep2.hashCode());
+		
+		Tree<String> leaf = deep2;
+		Iterator<Tree<String>> nodes = deep2.preorder();
+		for (int i = 0; i < depth; i++) {
+			assertSame(leaf, nodes.next());
+			leaf = leaf.child(0);
+		}
+		assertSame(leaf, nodes.next());
+		assertFalse(nodes.hasNext());
+		assertSame(leaf, deep2.postorder().next());
+		
+		leaf.setValue("other");
+		assertNotEquals(deep1, deep2);
+		try {
+			leaf.addChild(deep2);
+			fail("Should have thrown an exception");
+		} catch (IllegalArgumentException e) {
+		}
+		leaf.addChild(new Tree<String>("x"));
+		assertEquals(1, leaf.numberOfChildren());
+	}
+	
+	/**
+	 * Tests hashCode.
+	 */
+	@Test
+	public void hashCodeTest() {
+		assertEquals(tree1a.hashCode(), tree1b.hashCode());
+		assertEquals(tree3a.hashCode(), tree3b.hashCode());
+		assertEquals(new Tree<Integer>(9, new Tree<Integer>(3), new Tree<Integer>(3)).hashCode(), tree9.hashCode());
+		assertNotEquals(tree9.hashCode(), tree6.hashCode());
+		assertEquals(Tree.parse("a(b c(d))").hashCode(), Tree.parse("a(b c(d))").hashCode());
+		assertNotEquals(Tree.parse("a(b c(d))").hashCode(), Tree.parse("a(c(d) b)").hashCode());
+	}
+	
 	/**
 	 * Tests toString.
 	 */
 	@Test
 	public void toStringTest() {
 //		System.out.println(tree54.toString());
+		assertEquals("54\n  1\n  6\n    3\n    2\n    1\n    1\n  9\n    3\n    3\n", tree54.toString());
+		assertEquals("1\n", tree1a.toString());
+	}
+	
+	/**
+	 * Tests print.
+	 */
+	@Test
+	public void printTest() throws IOException {
+		StringWriter writer = new StringWriter();
+		tree54.print(writer);
+		assertEquals(tree54.toString(), writer.toString());
+		
+		// deeper than recursion would allow, and wider than the first indentation
+		Tree<Integer> deep = new Tree<Integer>(0);
+		Tree<Integer> leaf = deep;
+		for (int i = 1; i < 3000; i++) {
+			Tree<Integer> child = new Tree<Integer>(i);
+			leaf.addChildUnchecked(child);
+			leaf = child;
+		}
+		String[] lines = deep.toString().split("\n");
+		assertEquals(3000, lines.length);
+		assertEquals(2 * 2999 + 4, lines[2999].length());
+		assertTrue(lines[2999].endsWith(" 2999"));
+		assertEquals(' ', lines[2999].charAt(0));
 	}
 	
 	
@@ -227,6 +446,28 @@ public class TreeTest {
 	    
 	}
 	
+	/**
+	 * Tests addChildUnchecked.
+	 */
+	@Test
+	public void addChildUncheckedTest() {
+		Tree<Integer> root = new Tree<Integer>(9);
+		root.addChildUnchecked(tree3b);
+		root.addChildUnchecked(tree3c);
+		assertEquals(tree9, root);
+		assertSame(tree3c, root.lastChild());
+		
+		// a long chain, built bottom-up as a parser does
+		Tree<Integer> chain = new Tree<Integer>(0);
+		for (int i = 1; i <= 100000; i++) {
+			Tree<Integer> parent = new Tree<Integer>(i);
+			parent.addChildUnchecked(chain);
+			chain = parent;
+		}
+		assertEquals(100000, (int) chain.getValue());
+		assertEquals(99999, (int) chain.firstChild().getValue());
+	}
+	
 	/**
 	 * Tests addChild with different signature.
 	 */
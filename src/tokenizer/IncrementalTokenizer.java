@@ -0,0 +1,131 @@
+package tokenizer;
+
+import java.util.Set;
+
+/**
+ * Keeps the tokens of a text that is being edited up to date. After an edit,
+ * scanning restarts at the beginning of the edited line, which is found by
+ * binary search over the token starts, and stops at the first token that
+ * starts where a token of the previous stream started, counted from the
+ * unchanged rest of the text. From there on the previous tokens are taken
+ * over, moved by the change in length, since scanning from the same
+ * characters gives the same tokens.
+ *
+ * @author Joopyo Hong
+ */
+public class IncrementalTokenizer {
+    private final SymbolTable symbols;
+    private TokenStream tokens;
+    private int relexed = 0;
+    private int firstRelexed = 0;
+    private int replaced = 0;
+
+    /**
+     * Constructor for an IncrementalTokenizer, which tokenizes all of the given text.
+     *
+     * @param source    characters to be tokenized
+     * @param keywords  Set of keywords
+     * @exception IllegalArgumentException If an argument is null
+     */
+    public IncrementalTokenizer(CharSequence source, Set<String> keywords) {
+        if (source == null || keywords == null) throw new IllegalArgumentException();
+        symbols = new SymbolTable(keywords);
+        tokens = new TokenStream("", symbols);
+        edit(source, 0, 0, source.length());
+    }
+
+    /**
+     * Returns the tokens of the text as of the last edit.
+     *
+     * @return the current tokens
+     */
+    public TokenStream getTokens() {
+        return tokens;
+    }
+
+    /**
+     * Returns the number of tokens that were scanned again by the last edit.
+     *
+     * @return number of scanned tokens
+     */
+    public int getRelexedCount() {
+        return relexed;
+    }
+
+    /**
+     * Returns the index of the first token that was scanned again by the last
+     * edit. The tokens before it are those of the previous stream.
+     *
+     * @return index of the first scanned token
+     */
+    public int getFirstRelexed() {
+        return firstRelexed;
+    }
+
+    /**
+     * Returns the number of tokens of the previous stream that the tokens
+     * scanned by the last edit took the place of. The tokens after those are
+     * taken over, at indices moved by <code>getRelexedCount() - getReplacedCount()</code>.
+     *
+     * @return number of replaced tokens
+     */
+    public int getReplacedCount() {
+        return replaced;
+    }
+
+    /**
+     * Updates the tokens after removedLength characters at the given offset
+     * have been replaced by insertedLength characters, as reported by a
+     * <code>DocumentEvent</code> (an insertion removes nothing, a removal
+     * inserts nothing).
+     *
+     * @param source            the whole text, after the edit
+     * @param offset            index of the first changed character
+     * @param removedLength     number of characters removed at the offset
+     * @param insertedLength    number of characters inserted at the offset
+     * @return the tokens of the edited text
+     * @exception IllegalArgumentException If the edit does not fit the text
+     */
+    public TokenStream edit(CharSequence source, int offset, int removedLength, int insertedLength) {
+        int oldLength = tokens.getSource().length();
+        if (source == null || offset < 0 || removedLength < 0 || insertedLength < 0
+                || offset + removedLength > oldLength
+                || source.length() != oldLength - removedLength + insertedLength) {
+            throw new IllegalArgumentException();
+        }
+        int shift = insertedLength - removedLength;
+        int editEnd = offset + insertedLength; // end of the inserted characters
+        int lineStart = offset;
+        while (lineStart > 0 && source.charAt(lineStart - 1) != '\n') {
+            lineStart--;
+        }
+
+        int first = tokens.firstTokenAt(lineStart);
+        int next = tokens.firstTokenAt(offset + removedLength); // first previous token past the edit
+        TokenStream result = new TokenStream(source, symbols, tokens.size() + 16);
+        result.addAll(tokens, 0, first, 0);
+
+        Tokenizer tokenizer = new Tokenizer(source, lineStart, source.length(), symbols);
+        relexed = 0;
+        firstRelexed = first;
+        replaced = tokens.size() - first;
+        while (tokenizer.scan()) {
+            int start = tokenizer.scannedStart();
+            if (start >= editEnd) {
+                while (next < tokens.size() && tokens.start(next) + shift < start) {
+                    next++;
+                }
+                if (next < tokens.size() && tokens.start(next) + shift == start) {
+                    result.addAll(tokens, next, tokens.size(), shift);
+                    replaced = next - first;
+                    break;
+                }
+            }
+            result.add(tokenizer.scannedType(), start, tokenizer.scannedEnd(), tokenizer.scannedId());
+            tokenizer.skip();
+            relexed++;
+        }
+        tokens = result;
+        return result;
+    }
+}
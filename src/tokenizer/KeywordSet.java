@@ -0,0 +1,132 @@
+package tokenizer;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable set of keywords, looked up through a perfect hash: every
+ * keyword has a slot of its own, so finding out whether a String is a
+ * keyword takes one multiplication and at most one comparison. Instances
+ * can be shared freely between threads.
+ *
+ * @author Joopyo Hong
+ */
+public final class KeywordSet extends AbstractSet<String> {
+    private final String[] table;
+    private final int multiplier;
+    private final int shift;
+    private final int size;
+
+    /**
+     * Constructor for a KeywordSet holding the given keywords.
+     *
+     * @param keywords  the keywords; duplicates are ignored
+     * @exception IllegalArgumentException If a keyword is null, or two keywords have the same hash code
+     */
+    public KeywordSet(String... keywords) {
+        Set<String> distinct = new LinkedHashSet<String>(Arrays.asList(keywords));
+        if (distinct.contains(null)) throw new IllegalArgumentException();
+        Set<Integer> hashes = new HashSet<Integer>();
+        for (String keyword : distinct) {
+            if (!hashes.add(keyword.hashCode())) throw new IllegalArgumentException("Keywords with equal hash codes");
+        }
+        size = distinct.size();
+
+        int bits = 1;
+        while ((1 << bits) < 2 * size) {
+            bits++;
+        }
+        int m = 0;
+        String[] slots = null;
+        search: while (true) {
+            // try a number of odd multipliers, then a table twice as large
+            for (int attempt = 0; attempt < 1000; attempt++) {
+                m = 0x9E3779B1 + 2 * attempt;
+                slots = place(distinct, m, 32 - bits);
+                if (slots != null) break search;
+            }
+            bits++;
+        }
+        table = slots;
+        multiplier = m;
+        shift = 32 - bits;
+    }
+
+    /**
+     * Tells whether the given object is one of the keywords.
+     *
+     * @param o object to be looked up
+     * @return True if the object is a keyword
+     */
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof String)) return false;
+        String keyword = table[(o.hashCode() * multiplier) >>> shift];
+        return keyword != null && (keyword == o || keyword.equals(o));
+    }
+
+    /**
+     * Returns the number of keywords.
+     *
+     * @return number of keywords
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns an iterator over the keywords, which does not support removal.
+     *
+     * @return an iterator over the keywords
+     */
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<String>() {
+            private int slot = advance(0);
+
+            private int advance(int i) {
+                while (i < table.length && table[i] == null) {
+                    i++;
+                }
+                return i;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return slot < table.length;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                String keyword = table[slot];
+                slot = advance(slot + 1);
+                return keyword;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Puts every keyword in its slot, or returns null if two keywords collide.
+     */
+    private static String[] place(Set<String> keywords, int multiplier, int shift) {
+        String[] slots = new String[1 << (32 - shift)];
+        for (String keyword : keywords) {
+            int slot = (keyword.hashCode() * multiplier) >>> shift;
+            if (slots[slot] != null) return null;
+            slots[slot] = keyword;
+        }
+        return slots;
+    }
+}
@@ -0,0 +1,115 @@
+package tokenizer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The characters of a memory-mapped source file. A file that is pure ASCII
+ * (the usual case for Logo programs) is read straight from the mapped bytes,
+ * one byte per character, so it is never copied onto the heap as a whole.
+ *
+ * @author Joopyo Hong
+ */
+public class MappedSource implements CharSequence {
+    private final ByteBuffer bytes;
+    private final int offset;
+    private final int length;
+
+    /**
+     * Constructor for the characters of the given ASCII bytes, from offset
+     * (inclusive) to offset + length (exclusive).
+     */
+    private MappedSource(ByteBuffer bytes, int offset, int length) {
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * Maps the given file into memory and returns its characters. If the file
+     * contains anything but ASCII, it is decoded as UTF-8 instead.
+     *
+     * @param file  file to be mapped
+     * @return the characters of the file
+     * @exception IOException If the file cannot be read, or is 2 GB or larger
+     */
+    public static CharSequence map(File file) throws IOException {
+        FileInputStream input = new FileInputStream(file);
+        try {
+            FileChannel channel = input.getChannel();
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) throw new IOException("File is too large to map: " + file);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (isAscii(buffer)) {
+                return new MappedSource(buffer, 0, (int) size);
+            }
+            return StandardCharsets.UTF_8.decode(buffer);
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Returns the number of characters.
+     *
+     * @return the number of characters
+     */
+    @Override
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Returns the character at the given index.
+     *
+     * @param index index of the character
+     * @return the character
+     */
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) throw new IndexOutOfBoundsException();
+        return (char) bytes.get(offset + index);
+    }
+
+    /**
+     * Returns the characters from start (inclusive) to end (exclusive), without copying them.
+     *
+     * @param start index of the first character
+     * @param end   index just past the last character
+     * @return the characters in the range
+     */
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || start > end || end > length) throw new IndexOutOfBoundsException();
+        return new MappedSource(bytes, offset + start, end - start);
+    }
+
+    /**
+     * Returns the characters as a String.
+     *
+     * @return the characters as a String
+     */
+    @Override
+    public String toString() {
+        byte[] chars = new byte[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = bytes.get(offset + i);
+        }
+        return new String(chars, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Tells whether all bytes of the buffer are ASCII characters.
+     */
+    private static boolean isAscii(ByteBuffer buffer) {
+        for (int i = buffer.limit() - 1; i >= 0; i--) {
+            if (buffer.get(i) < 0) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,206 @@
+package tokenizer;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Interns names: every distinct name gets a small integer id, and a single
+ * String for it. Names can be looked up straight from a range of characters,
+ * so no String is created for a name that has been seen before. Each name
+ * also has a single canonical Token, a keyword token if the name is one of
+ * the table's keywords.
+ *
+ * @author Joopyo Hong
+ */
+public class SymbolTable {
+    private final Set<String> keywords;
+    private String[] names = new String[16];
+    private int[] hashes = new int[16];
+    private boolean[] isKeyword = new boolean[16];
+    private Token[] tokens = new Token[16]; // canonical tokens, created when first asked for
+    private int[] slots = new int[32]; // id + 1 of the name hashed to the slot, or 0 if empty
+    private int size = 0;
+
+    /**
+     * Constructor for an empty SymbolTable without keywords.
+     */
+    public SymbolTable() {
+        this(Collections.<String>emptySet());
+    }
+
+    /**
+     * Constructor for an empty SymbolTable. Names in the given set are keywords.
+     *
+     * @param keywords  Set of keywords
+     * @exception IllegalArgumentException If the argument is null
+     */
+    public SymbolTable(Set<String> keywords) {
+        if (keywords == null) throw new IllegalArgumentException();
+        this.keywords = keywords;
+    }
+
+    /**
+     * Returns the id of the given name, adding the name if it is new.
+     *
+     * @param name  name to be interned
+     * @return id of the name
+     */
+    public int intern(String name) {
+        return intern(name, 0, name.length());
+    }
+
+    /**
+     * Returns the id of the name made of the characters from start (inclusive)
+     * to end (exclusive), adding the name if it is new.
+     *
+     * @param source    characters holding the name
+     * @param start     index of the first character of the name
+     * @param end       index just past the last character of the name
+     * @return id of the name
+     */
+    public int intern(CharSequence source, int start, int end) {
+        int hash = hash(source, start, end);
+        int mask = slots.length - 1;
+        int slot = spread(hash) & mask;
+        while (slots[slot] != 0) {
+            int id = slots[slot] - 1;
+            if (hashes[id] == hash && regionEquals(names[id], source, start, end)) return id;
+            slot = (slot + 1) & mask;
+        }
+
+        int id = size++;
+        if (id == names.length) {
+            names = Arrays.copyOf(names, 2 * id);
+            hashes = Arrays.copyOf(hashes, 2 * id);
+            isKeyword = Arrays.copyOf(isKeyword, 2 * id);
+            tokens = Arrays.copyOf(tokens, 2 * id);
+        }
+        names[id] = source.subSequence(start, end).toString();
+        hashes[id] = hash;
+        isKeyword[id] = keywords.contains(names[id]);
+        slots[slot] = id + 1;
+        if (2 * size > slots.length) rehash();
+        return id;
+    }
+
+    /**
+     * Returns the name with the given id.
+     *
+     * @param id    id of the name
+     * @return the name
+     */
+    public String name(int id) {
+        return names[id];
+    }
+
+    /**
+     * Returns the hash code of the name with the given id, which is the same
+     * as the name's String hash code.
+     *
+     * @param id    id of the name
+     * @return the hash code of the name
+     */
+    public int hash(int id) {
+        return hashes[id];
+    }
+
+    /**
+     * Tells whether the name with the given id is a keyword.
+     *
+     * @param id    id of the name
+     * @return True if the name is a keyword
+     */
+    public boolean isKeyword(int id) {
+        return isKeyword[id];
+    }
+
+    /**
+     * Returns the canonical token for the name with the given id: the shared
+     * {@link Token#keyword(String)} token for a keyword, otherwise a NAME token
+     * that is the same for all occurrences of the name.
+     *
+     * @param id    id of the name
+     * @return the token for the name
+     */
+    public Token token(int id) {
+        Token token = tokens[id];
+        if (token == null) {
+            token = isKeyword[id] ? Token.keyword(names[id]) : new Token(TokenType.NAME, names[id]);
+            tokens[id] = token;
+        }
+        return token;
+    }
+
+    /**
+     * Returns the number of names in this table.
+     *
+     * @return number of names
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all names, keeping the keywords and the allocated space.
+     */
+    public void clear() {
+        Arrays.fill(slots, 0);
+        Arrays.fill(names, 0, size, null);
+        Arrays.fill(tokens, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Returns the keywords of this table.
+     */
+    Set<String> keywords() {
+        return keywords;
+    }
+
+    //------------------------- Private "helper" methods
+
+    /**
+     * Computes the String hash code of the characters from start to end.
+     */
+    private static int hash(CharSequence source, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + source.charAt(i);
+        }
+        return hash;
+    }
+
+    /**
+     * Mixes the high bits of a hash code into the low bits used as slot index.
+     */
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Tells whether the name consists of the characters from start to end.
+     */
+    private static boolean regionEquals(String name, CharSequence source, int start, int end) {
+        if (name.length() != end - start) return false;
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) != source.charAt(start + i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Doubles the number of slots and re-inserts all names.
+     */
+    private void rehash() {
+        slots = new int[2 * slots.length];
+        int mask = slots.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = spread(hashes[id]) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id + 1;
+        }
+    }
+}
@@ -1,26 +1,86 @@
 
 package tokenizer;
 
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * @author Joopyo Hong
  * @version March 20, 2014
  */
 public class Token {
 	
-	private TokenType type;
-	private String value;
+	/**
+	 * The token for a newline (or a comment ended by a newline).
+	 */
+	public static final Token NEWLINE = new Token(TokenType.EOL, "\n");
+
+	private static final Token[] SYMBOLS = new Token[256];
+	private static final ConcurrentHashMap<String, Token> KEYWORDS = new ConcurrentHashMap<String, Token>();
+
+	static {
+		for (char ch = 0; ch < SYMBOLS.length; ch++) {
+			SYMBOLS[ch] = new Token(TokenType.SYMBOL, String.valueOf(ch));
+		}
+	}
+
+	private final TokenType type;
+	private final String value;
+	private final int hash;
+	private final double number;
 
 	/**
-	 * Constructor for class Token
+	 * Constructor for class Token. The value of a NUMBER token is parsed here.
 	 * 
 	 * @param type	type to be stored in this token
 	 * @param value	value to be stored in this token
 	 * @exception IllegalArgumentException if the argument map is null
 	 */
 	public Token(TokenType type, String value) {
+		this(type, value, type == TokenType.NUMBER && value != null ? parseNumber(value, 0, value.length()) : Double.NaN);
+	}
+	
+	/**
+	 * Constructor for class Token with an already known numeric value.
+	 * 
+	 * @param type	type to be stored in this token
+	 * @param value	value to be stored in this token
+	 * @param number	numeric value of this token
+	 * @exception IllegalArgumentException if the argument map is null
+	 */
+	public Token(TokenType type, String value, double number) {
 		if (type == null || value == null) throw new IllegalArgumentException();
 		this.type = type;
 		this.value = value;
+		this.hash = value.hashCode();
+		this.number = number;
+	}
+	
+	/**
+	 * Returns the shared token for a single-character symbol.
+	 * 
+	 * @param ch	the symbol
+	 * @return SYMBOL token for the character
+	 */
+	public static Token symbol(char ch) {
+		if (ch < SYMBOLS.length) return SYMBOLS[ch];
+		return new Token(TokenType.SYMBOL, String.valueOf(ch));
+	}
+	
+	/**
+	 * Returns the shared token for a keyword. All calls with equal names
+	 * return the same token.
+	 * 
+	 * @param name	the keyword
+	 * @return KEYWORD token for the name
+	 */
+	public static Token keyword(String name) {
+		Token token = KEYWORDS.get(name);
+		if (token == null) {
+			token = new Token(TokenType.KEYWORD, name);
+			Token existing = KEYWORDS.putIfAbsent(name, token);
+			if (existing != null) token = existing;
+		}
+		return token;
 	}
 	
 	/**
@@ -32,6 +92,15 @@ public class Token {
 		return this.value;
 	}
 	
+	/**
+	 * Gets numeric value of this token.
+	 * 
+	 * @return numeric value of a NUMBER token; NaN for other tokens
+	 */
+	public double getNumber() {
+		return this.number;
+	}
+	
 	/**
 	 * Gets type of this token.
 	 * 
@@ -49,8 +118,9 @@ public class Token {
 	 */
 	@Override
 	public boolean equals(Object o) {
+		if (this == o) return true;
 		if (!(o instanceof Token)) return false;
-		return (this.value).equals(((Token)o).value);
+		return this.hash == ((Token)o).hash && (this.value).equals(((Token)o).value);
 //		return this.type == ((Token)o).type && (this.value).equals(((Token)o).value);
 	}
 	
@@ -61,7 +131,36 @@ public class Token {
 	 */ 
 	@Override
 	public int hashCode() {
-		return value.hashCode();
+		return hash;
+	}
+	
+	/**
+	 * Parses the number made of the characters from start (inclusive) to end
+	 * (exclusive), in any form the Tokenizer accepts as a NUMBER: digits with
+	 * an optional dot and exponent, and an optional d, D, f, F, l or L suffix.
+	 * 
+	 * @param source	characters holding the number
+	 * @param start		index of the first character of the number
+	 * @param end		index just past the last character of the number
+	 * @return the value of the number, or NaN if the characters are not a number
+	 */
+	static double parseNumber(CharSequence source, int start, int end) {
+		if (end - start <= 15) {
+			// plain integers of up to 15 digits are exact as doubles
+			long n = 0;
+			int i = start;
+			while (i < end && source.charAt(i) >= '0' && source.charAt(i) <= '9') {
+				n = 10 * n + (source.charAt(i) - '0');
+				i++;
+			}
+			if (i == end && end > start) return n;
+		}
+		if (end > start && "dDfFlL".indexOf(source.charAt(end - 1)) >= 0) end--;
+		try {
+			return Double.parseDouble(source.subSequence(start, end).toString());
+		} catch (NumberFormatException e) {
+			return Double.NaN;
+		}
 	}
 	
 	   /**
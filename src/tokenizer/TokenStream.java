@@ -0,0 +1,521 @@
+package tokenizer;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A tokenized source, stored column by column: for every token its type,
+ * the index of its first character in the source, its length and, for names
+ * and keywords, the id of its name in a {@link SymbolTable}. No Token object
+ * exists for a token until {@link #token(int)} is asked for one.
+ *
+ * @author Joopyo Hong
+ */
+public class TokenStream {
+    private static final TokenType[] TYPES = TokenType.values();
+
+    /**
+     * Sources shorter than this are tokenized on the calling thread, even if a pool is given.
+     */
+    public static final int PARALLEL_THRESHOLD = 1 << 20;
+    private static final int CHUNK_SIZE = 1 << 18; // characters per chunk of a parallel tokenization
+
+    private final CharSequence source;
+    private final SymbolTable symbols;
+
+    private byte[] types;
+    private int[] starts;
+    private int[] lengths;
+    private int[] ids;
+    private int size = 0;
+
+    /**
+     * Constructor for an empty TokenStream over the given source.
+     *
+     * @param source    characters the tokens are taken from
+     * @param symbols   table the names of the tokens are interned in
+     * @exception IllegalArgumentException If an argument is null
+     */
+    TokenStream(CharSequence source, SymbolTable symbols) {
+        this(source, symbols, 64);
+    }
+
+    /**
+     * Constructor for an empty TokenStream with room for the given number of tokens.
+     */
+    TokenStream(CharSequence source, SymbolTable symbols, int capacity) {
+        if (source == null || symbols == null) throw new IllegalArgumentException();
+        this.source = source;
+        this.symbols = symbols;
+        types = new byte[capacity];
+        starts = new int[capacity];
+        lengths = new int[capacity];
+        ids = new int[capacity];
+    }
+
+    /**
+     * Tokenizes all of the given source.
+     *
+     * @param source    characters to be tokenized
+     * @param keywords  Set of keywords
+     * @return the tokens of the source
+     * @exception IllegalArgumentException If an argument is null
+     */
+    public static TokenStream tokenize(CharSequence source, Set<String> keywords) {
+        if (source == null) throw new IllegalArgumentException();
+        return tokenize(source, 0, source.length(), keywords);
+    }
+
+    /**
+     * Tokenizes the given source from index start (inclusive) to index end (exclusive).
+     *
+     * @param source    characters to be tokenized
+     * @param start     index of the first character to be tokenized
+     * @param end       index just past the last character to be tokenized
+     * @param keywords  Set of keywords
+     * @return the tokens of the range
+     * @exception IllegalArgumentException If an argument is null or the range is illegal
+     */
+    public static TokenStream tokenize(CharSequence source, int start, int end, Set<String> keywords) {
+        Tokenizer tokenizer = new Tokenizer(source, start, end, keywords);
+        TokenStream stream = new TokenStream(source, tokenizer.symbols());
+        while (tokenizer.scan()) {
+            stream.add(tokenizer.scannedType(), tokenizer.scannedStart(), tokenizer.scannedEnd(), tokenizer.scannedId());
+            tokenizer.skip();
+        }
+        return stream;
+    }
+
+    /**
+     * Tokenizes all of the given source, using the given pool if the source is
+     * at least {@link #PARALLEL_THRESHOLD} characters long. The source is cut
+     * into chunks at newlines, which no token spans, the chunks are tokenized
+     * in parallel, and their tokens are concatenated in order. The result is
+     * the same as that of {@link #tokenize(CharSequence, Set)}.
+     *
+     * @param source    characters to be tokenized
+     * @param keywords  Set of keywords
+     * @param pool      pool the chunks are tokenized in
+     * @return the tokens of the source
+     * @exception IllegalArgumentException If an argument is null
+     */
+    public static TokenStream tokenize(CharSequence source, Set<String> keywords, ForkJoinPool pool) {
+        if (source == null || keywords == null || pool == null) throw new IllegalArgumentException();
+        if (source.length() < PARALLEL_THRESHOLD) return tokenize(source, keywords);
+
+        int[] bounds = chunkBounds(source);
+        TokenStream[] chunks = new TokenStream[bounds.length - 1];
+        pool.invoke(new ChunkTask(source, keywords, bounds, chunks, 0, chunks.length));
+        return concatenate(source, keywords, chunks);
+    }
+
+    /**
+     * Returns the number of tokens.
+     *
+     * @return number of tokens
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the type of the token at the given index.
+     *
+     * @param index index of the token
+     * @return type of the token
+     */
+    public TokenType type(int index) {
+        return TYPES[types[index]];
+    }
+
+    /**
+     * Returns the index in the source of the first character of the token at the given index.
+     *
+     * @param index index of the token
+     * @return index of the token's first character
+     */
+    public int start(int index) {
+        return starts[index];
+    }
+
+    /**
+     * Returns the number of characters of the token at the given index.
+     *
+     * @param index index of the token
+     * @return length of the token
+     */
+    public int length(int index) {
+        return lengths[index];
+    }
+
+    /**
+     * Returns the symbol id of the token at the given index.
+     *
+     * @param index index of the token
+     * @return id of the token's name in the symbol table, or -1 if the token is not a name or keyword
+     */
+    public int id(int index) {
+        return ids[index];
+    }
+
+    /**
+     * Returns the value of the token at the given index.
+     *
+     * @param index index of the token
+     * @return value of the token
+     */
+    public String text(int index) {
+        if (ids[index] >= 0) return symbols.name(ids[index]);
+        if (types[index] == TokenType.EOL.ordinal()) return "\n";
+        return source.subSequence(starts[index], starts[index] + lengths[index]).toString();
+    }
+
+    /**
+     * Tells whether the value of the token at the given index is the given text.
+     *
+     * @param index index of the token
+     * @param text  expected value
+     * @return True if the token's value is the text
+     */
+    public boolean textEquals(int index, String text) {
+        if (ids[index] >= 0) return symbols.name(ids[index]).equals(text);
+        if (types[index] == TokenType.EOL.ordinal()) return text.equals("\n");
+        int length = lengths[index];
+        if (text.length() != length) return false;
+        int start = starts[index];
+        for (int i = 0; i < length; i++) {
+            if (source.charAt(start + i) != text.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns a Token for the token at the given index. Names, keywords, symbols
+     * and newlines get their shared Token; numbers and errors a new one.
+     *
+     * @param index index of the token
+     * @return the token
+     */
+    public Token token(int index) {
+        if (ids[index] >= 0) return symbols.token(ids[index]);
+        if (types[index] == TokenType.EOL.ordinal()) return Token.NEWLINE;
+        if (types[index] == TokenType.SYMBOL.ordinal() && lengths[index] == 1) {
+            return Token.symbol(source.charAt(starts[index]));
+        }
+        return new Token(type(index), text(index));
+    }
+
+    /**
+     * Returns the characters the tokens are taken from.
+     *
+     * @return the source
+     */
+    public CharSequence getSource() {
+        return source;
+    }
+
+    /**
+     * Returns the table of the names and keywords in this stream.
+     *
+     * @return the symbol table
+     */
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    /**
+     * Returns a cursor positioned at the first token.
+     *
+     * @return a new cursor
+     */
+    public Cursor cursor() {
+        return new Cursor(0, size);
+    }
+
+    /**
+     * Returns a cursor over the tokens from index start (inclusive) to index end (exclusive).
+     *
+     * @param start index of the first token
+     * @param end   index just past the last token
+     * @return a new cursor
+     * @exception IllegalArgumentException If the range is illegal
+     */
+    public Cursor cursor(int start, int end) {
+        if (start < 0 || start > end || end > size) throw new IllegalArgumentException();
+        return new Cursor(start, end);
+    }
+
+    /**
+     * Appends a token.
+     *
+     * @param type  type of the token
+     * @param start index of the token's first character
+     * @param end   index just past the token's last character
+     * @param id    id of the token's name in the symbol table, or -1 if it is not a name or keyword
+     */
+    void add(TokenType type, int start, int end, int id) {
+        if (size == types.length) {
+            int capacity = 2 * size;
+            types = Arrays.copyOf(types, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            ids = Arrays.copyOf(ids, capacity);
+        }
+        types[size] = (byte) type.ordinal();
+        starts[size] = start;
+        lengths[size] = end - start;
+        ids[size] = id;
+        size++;
+    }
+
+    /**
+     * Appends the tokens of another stream over the same symbol table, from
+     * index from (inclusive) to index to (exclusive), moving their starts by
+     * the given shift.
+     *
+     * @param other stream the tokens are taken from
+     * @param from  index of the first token
+     * @param to    index just past the last token
+     * @param shift number of characters the tokens have moved in the source
+     */
+    void addAll(TokenStream other, int from, int to, int shift) {
+        int count = to - from;
+        if (size + count > types.length) {
+            int capacity = Math.max(2 * types.length, size + count);
+            types = Arrays.copyOf(types, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            ids = Arrays.copyOf(ids, capacity);
+        }
+        System.arraycopy(other.types, from, types, size, count);
+        System.arraycopy(other.lengths, from, lengths, size, count);
+        System.arraycopy(other.ids, from, ids, size, count);
+        if (shift == 0) {
+            System.arraycopy(other.starts, from, starts, size, count);
+        } else {
+            for (int i = 0; i < count; i++) {
+                starts[size + i] = other.starts[from + i] + shift;
+            }
+        }
+        size += count;
+    }
+
+    /**
+     * Returns the index of the first token that starts at or after the given
+     * index in the source, or size() if there is none.
+     *
+     * @param position  index in the source
+     * @return index of the first token at or after the position
+     */
+    int firstTokenAt(int position) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (starts[middle] < position) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * Returns the indices where the chunks of a parallel tokenization start,
+     * followed by the length of the source. Every chunk but the first starts
+     * just after a newline.
+     */
+    private static int[] chunkBounds(CharSequence source) {
+        int length = source.length();
+        int[] bounds = new int[length / CHUNK_SIZE + 2];
+        int count = 1; // bounds[0] == 0
+        int i = CHUNK_SIZE;
+        while (i < length) {
+            while (i < length && source.charAt(i - 1) != '\n') {
+                i++;
+            }
+            if (i == length) break;
+            bounds[count++] = i;
+            i += CHUNK_SIZE;
+        }
+        bounds[count++] = length;
+        return Arrays.copyOf(bounds, count);
+    }
+
+    /**
+     * Concatenates the token streams of consecutive chunks of the source,
+     * interning their names in one new symbol table.
+     */
+    private static TokenStream concatenate(CharSequence source, Set<String> keywords, TokenStream[] chunks) {
+        int total = 0;
+        for (TokenStream chunk : chunks) {
+            total += chunk.size;
+        }
+        TokenStream stream = new TokenStream(source, new SymbolTable(keywords), Math.max(total, 1));
+        for (TokenStream chunk : chunks) {
+            int[] remap = new int[chunk.symbols.size()];
+            for (int id = 0; id < remap.length; id++) {
+                remap[id] = stream.symbols.intern(chunk.symbols.name(id));
+            }
+            System.arraycopy(chunk.types, 0, stream.types, stream.size, chunk.size);
+            System.arraycopy(chunk.starts, 0, stream.starts, stream.size, chunk.size);
+            System.arraycopy(chunk.lengths, 0, stream.lengths, stream.size, chunk.size);
+            for (int i = 0; i < chunk.size; i++) {
+                int id = chunk.ids[i];
+                stream.ids[stream.size + i] = id < 0 ? -1 : remap[id];
+            }
+            stream.size += chunk.size;
+        }
+        return stream;
+    }
+
+    /**
+     * Tokenizes the chunks from index from (inclusive) to index to (exclusive),
+     * splitting the work in halves until a single chunk is left.
+     */
+    private static class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final CharSequence source;
+        private final Set<String> keywords;
+        private final int[] bounds;
+        private final TokenStream[] chunks;
+        private final int from;
+        private final int to;
+
+        ChunkTask(CharSequence source, Set<String> keywords, int[] bounds, TokenStream[] chunks, int from, int to) {
+            this.source = source;
+            this.keywords = keywords;
+            this.bounds = bounds;
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                chunks[from] = tokenize(source, bounds[from], bounds[to], keywords);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ChunkTask(source, keywords, bounds, chunks, from, middle),
+                    new ChunkTask(source, keywords, bounds, chunks, middle, to));
+        }
+    }
+
+    /**
+     * Walks through the tokens of a TokenStream, one at a time, without
+     * creating Token objects until {@link #next()} is called.
+     */
+    public class Cursor {
+        private int index;
+        private final int end;
+
+        /**
+         * Constructor for a cursor over the given range of tokens.
+         */
+        private Cursor(int start, int end) {
+            this.index = start;
+            this.end = end;
+        }
+
+        /**
+         * Indicates whether there are more tokens.
+         *
+         * @return True if the cursor is not at the end
+         */
+        public boolean hasNext() {
+            return index < end;
+        }
+
+        /**
+         * Returns the index of the current token in the stream.
+         *
+         * @return index of the current token
+         */
+        public int index() {
+            return index;
+        }
+
+        /**
+         * Moves the cursor to the token with the given index.
+         *
+         * @param index index of the token
+         */
+        public void seek(int index) {
+            this.index = index;
+        }
+
+        /**
+         * Returns the type of the current token.
+         *
+         * @return type of the current token
+         */
+        public TokenType type() {
+            return TokenStream.this.type(index);
+        }
+
+        /**
+         * Returns the index in the source of the current token's first character.
+         *
+         * @return index of the first character
+         */
+        public int start() {
+            return starts[index];
+        }
+
+        /**
+         * Returns the number of characters of the current token.
+         *
+         * @return length of the current token
+         */
+        public int length() {
+            return lengths[index];
+        }
+
+        /**
+         * Returns the symbol id of the current token.
+         *
+         * @return id of the current token, or -1 if it is not a name or keyword
+         */
+        public int id() {
+            return ids[index];
+        }
+
+        /**
+         * Tells whether the current token has the given type and value.
+         *
+         * @param type  expected type
+         * @param value expected value
+         * @return True if there is a current token with the expected type and value
+         */
+        public boolean matches(TokenType type, String value) {
+            return hasNext() && types[index] == type.ordinal() && textEquals(index, value);
+        }
+
+        /**
+         * Moves to the next token.
+         */
+        public void advance() {
+            index++;
+        }
+
+        /**
+         * Returns a Token for the current token and moves to the next one.
+         *
+         * @return the current token
+         */
+        public Token next() {
+            return token(index++);
+        }
+
+        /**
+         * Returns the TokenStream this cursor walks through.
+         *
+         * @return the stream
+         */
+        public TokenStream getStream() {
+            return TokenStream.this;
+        }
+    }
+}
@@ -7,334 +7,600 @@ package tokenizer;
 import java.util.Set;
 import java.io.IOException;
 import java.io.Reader;
-import java.io.StringReader;
 
 /**
+ * Breaks Logo source text into tokens. The whole source is held as a
+ * <code>CharSequence</code> (a <code>String</code>, or a <code>CharBuffer</code>
+ * wrapping a <code>char[]</code>) and scanned with index cursors, so each
+ * token's value is cut from the source in one step. Names are interned in a
+ * {@link SymbolTable} as they are scanned, so every occurrence of a name
+ * shares one Token, and keywords, symbols and newlines are shared
+ * {@link Token} singletons. Up to {@link #LOOKAHEAD} tokens can be looked at
+ * with {@link #peek(int)} before they are returned; each token is scanned only
+ * once. A Tokenizer can also replay a {@link TokenStream} that has been
+ * tokenized before.
+ *
  * @author Joopyo Hong
  * @version March 20, 2014
  */
 public class Tokenizer {
     public boolean debugging = false;
-	private enum States {
-		READY, IN_NAME, IN_NUMBER, EOL;
-	}
-	private Reader reader;
-	private Set<String> keywords;
+
+    /**
+     * The number of tokens that can be looked at ahead of the next one returned.
+     */
+    public static final int LOOKAHEAD = 8; // a power of two
+    private static final int MASK = LOOKAHEAD - 1;
+
+    // character classes, as bit flags in CHAR_CLASS (ASCII only; everything else is a symbol)
+    private static final byte NAME_START = 1;
+    private static final byte NAME_PART = 2;
+    private static final byte NUMBER_START = 4;
+    private static final byte BLANK = 8;
+    private static final byte[] CHAR_CLASS = new byte[128];
+
+    static {
+        for (char ch = 'a'; ch <= 'z'; ch++) CHAR_CLASS[ch] = NAME_START | NAME_PART;
+        for (char ch = 'A'; ch <= 'Z'; ch++) CHAR_CLASS[ch] = NAME_START | NAME_PART;
+        for (char ch = '0'; ch <= '9'; ch++) CHAR_CLASS[ch] = NAME_PART | NUMBER_START;
+        CHAR_CLASS['_'] = NAME_START | NAME_PART;
+        CHAR_CLASS['$'] = NAME_START | NAME_PART;
+        CHAR_CLASS['.'] = NUMBER_START;
+        CHAR_CLASS[' '] = BLANK;
+        CHAR_CLASS['\t'] = BLANK;
+    }
+
+	private CharSequence source;
+	private int position;
+	private int limit;
+	private SymbolTable symbols;
+	private boolean ownSymbols = false; // whether symbols may be cleared by reset()
+	private TokenStream.Cursor replay = null;
 	private Token backup = null;
+	private int backupStart = 0; // position of backup in the source
 	private boolean pushedBack = false;
-	
+
+	// tokens that have been scanned, but not yet returned by next(), in a ring buffer
+	private final TokenType[] aheadType = new TokenType[LOOKAHEAD];
+	private final int[] aheadStart = new int[LOOKAHEAD];
+	private final int[] aheadEnd = new int[LOOKAHEAD];
+	private final int[] aheadIndex = new int[LOOKAHEAD]; // index in the replayed stream
+	private final int[] aheadId = new int[LOOKAHEAD];
+	private final double[] aheadNumber = new double[LOOKAHEAD];
+	private int head = 0; // slot of the next token
+	private int ahead = 0; // number of scanned tokens
+
 	/**
-	 * Constructor for class Tokenizer
-	 * 
+	 * Constructor for class Tokenizer. The reader is read to its end
+	 * before any token is returned.
+	 *
 	 * @param reader	Reader to be stored in this token
 	 * @param keywords	Set of keywords to be stored in this token
 	 * @exception IllegalArgumentException If the argument map is null
+	 * @exception RuntimeException  If an I/O error occurs
 	 */
 	public Tokenizer(Reader reader, Set<String> keywords) {
-		if (reader == null || keywords == null) throw new IllegalArgumentException();
-		this.reader = reader;
-		this.keywords = keywords;
+		this(readFully(reader), keywords);
 	}
-	
+
 	/**
-	 * Indicates whether there are more tokens to be returned.
-	 * 
+	 * Helper for the Reader constructor, so that a null reader is still reported
+	 * as an IllegalArgumentException.
+	 */
+	private Tokenizer(CharSequence source, Set<String> keywords) {
+		this(source, 0, source == null ? 0 : source.length(), keywords);
+	}
+
+	/**
+	 * Constructor for class Tokenizer which scans the given characters in place,
+	 * from index start (inclusive) to index end (exclusive).
+	 *
+	 * @param source	characters to be tokenized, e.g. a String or a CharBuffer
+	 * @param start		index of the first character to be tokenized
+	 * @param end		index just past the last character to be tokenized
+	 * @param keywords	Set of keywords to be stored in this token
+	 * @exception IllegalArgumentException If the argument map is null or the range is illegal
+	 */
+	public Tokenizer(CharSequence source, int start, int end, Set<String> keywords) {
+		this(source, start, end, keywords == null ? null : new SymbolTable(keywords));
+		ownSymbols = true;
+	}
+
+	/**
+	 * Constructor for class Tokenizer which interns names in the given symbol table.
+	 *
+	 * @param source	characters to be tokenized
+	 * @param start		index of the first character to be tokenized
+	 * @param end		index just past the last character to be tokenized
+	 * @param symbols	table the names are interned in, and which knows the keywords
+	 * @exception IllegalArgumentException If the argument map is null or the range is illegal
+	 */
+	Tokenizer(CharSequence source, int start, int end, SymbolTable symbols) {
+		if (source == null || symbols == null) throw new IllegalArgumentException();
+		if (start < 0 || start > end || end > source.length()) throw new IllegalArgumentException();
+		this.source = source;
+		this.position = start;
+		this.limit = end;
+		this.symbols = symbols;
+	}
+
+	/**
+	 * Constructor for class Tokenizer which replays the tokens of a token stream,
+	 * instead of scanning characters.
+	 *
+	 * @param tokens	token stream to be replayed
+	 * @exception IllegalArgumentException If the argument is null
+	 */
+	public Tokenizer(TokenStream tokens) {
+		if (tokens == null) throw new IllegalArgumentException();
+		this.source = tokens.getSource();
+		this.symbols = tokens.getSymbols();
+		this.replay = tokens.cursor();
+	}
+
+	/**
+	 * Constructor for class Tokenizer which replays the tokens of a token stream
+	 * from index start (inclusive) to index end (exclusive).
+	 *
+	 * @param tokens	token stream to be replayed
+	 * @param start		index of the first token to be replayed
+	 * @param end		index just past the last token to be replayed
+	 * @exception IllegalArgumentException If the stream is null or the range is illegal
+	 */
+	public Tokenizer(TokenStream tokens, int start, int end) {
+		this(tokens);
+		this.replay = tokens.cursor(start, end);
+	}
+
+	/**
+	 * Makes this Tokenizer scan the given characters instead, from index start
+	 * (inclusive) to index end (exclusive), with the same keywords. Its buffers
+	 * and symbol table are reused; tokens returned before stay valid.
+	 *
+	 * @param source	characters to be tokenized
+	 * @param start		index of the first character to be tokenized
+	 * @param end		index just past the last character to be tokenized
+	 * @exception IllegalArgumentException If the source is null or the range is illegal
+	 */
+	public void reset(CharSequence source, int start, int end) {
+		if (source == null) throw new IllegalArgumentException();
+		if (start < 0 || start > end || end > source.length()) throw new IllegalArgumentException();
+		if (ownSymbols) {
+		    symbols.clear();
+		} else {
+		    // the table belongs to a token stream, which must not change
+		    symbols = new SymbolTable(symbols.keywords());
+		    ownSymbols = true;
+		}
+		this.source = source;
+		this.position = start;
+		this.limit = end;
+		this.replay = null;
+		this.backup = null;
+		this.pushedBack = false;
+		this.head = 0;
+		this.ahead = 0;
+	}
+
+	/**
+	 * Indicates whether there are more tokens to be returned. Blanks and the bodies
+	 * of comments are skipped here, once, so repeated calls cost constant time.
+	 *
 	 * @return True if there are more tokens to be returned
-	 * @exception RuntimeException  If an I/O error occurs
 	 */
 	public boolean hasNext() {
-		if (pushedBack) return true;
-		int diagnosis;
-		try {
-    		reader.mark(1);
-    		diagnosis = reader.read();
-            while (diagnosis == ' ') {
-                diagnosis = reader.read();
-            }
-    		reader.reset();
-    		
-    		// the following huge chunk deals with the case of comment
-    		if (diagnosis == '/') {
-    			reader.mark(1);
-    			
-    			int diagnosis2 = reader.read();
-    	        while (diagnosis2 != '/') {
-    	            diagnosis2 = reader.read();
-    	        }
-    			diagnosis2 = reader.read();
-    			reader.reset();
-    			
-    			reader.mark(1);
-    			if (diagnosis2 == '/') {
-    				while (diagnosis2 != -1) {
-    					if (diagnosis2 == '\n') {
-    						reader.reset();
-    						return true;
-    					}
-    					diagnosis2 = reader.read();
-    				}
-    				reader.reset();
-    				return false;
-    			}
-    			reader.reset();
-    			return true;
-    		}
-		} catch (IOException e) {
-		    throw new RuntimeException("There was an IOException.");
-		}
-		
-		return diagnosis != -1;
+		if (pushedBack || ahead > 0) return true;
+		return hasMoreInput();
 	}
-	
+
 	/**
 	 * Returns the next token.
-	 * 
+	 *
 	 * @return The next token
-	 * @exception RuntimeException If there is no more token or if there is an IOException
+	 * @exception RuntimeException If there is no more token
 	 */
 	public Token next() {
-			    
 		if (pushedBack) {
 			pushedBack = false;
 			return backup;
 		}
-		
-		States state = States.READY;
-		TokenType type = TokenType.ERROR;
-		String value = "";
-		boolean dotted = false;
-		boolean exponented = false;
-		boolean lastWasE = false;
-		boolean lastWasSign = false;
-		
-		try {
-    		if (!hasNext()) {
-    			throw new RuntimeException("No more tokens!");
-    		}
-    		
-    		int ch = reader.read();
-    		
-    		while (ch != -1) {
-    			switch (state) {
-    				case READY: {
-    					// name mode
-    					if ((ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || (ch == '_') || (ch == '$')) {
-    						type = TokenType.NAME;
-    						state = States.IN_NAME;
-    						break;
-    					}
-    					// number mode
-    					if ((ch >= '0' && ch <= '9') || ch == '.') {
-    						type = TokenType.NUMBER;
-    						state = States.IN_NUMBER;
-    						break;
-    					}
-    					// white space
-    					if (ch == ' ' || ch == '\t') {
-    						ch = reader.read();
-    						break;
-    					}
-    					// comments
-    					if (ch == '/') {
-    						reader.mark(1);
-    						ch = reader.read();
-    						if (ch == '/') {
-    							type = TokenType.EOL;
-    							state = States.EOL;
-    							break;
-    						} else {
-    							ch = '/';
-    							reader.reset();
-    						}
-    					}
-    					// symbol: any single character that isn't whitespace and isn't part of a name or number.
-    					if (ch >= 0 && ch <= 255 && ch != '\n') {
-    						backup = new Token(TokenType.SYMBOL, value + (char)ch);
-    						return backup;
-    					}
-    					// EOL: newline.
-    					if (ch == '\n') {
-    						backup = new Token(TokenType.EOL, "\n");
-    						return backup;
-    					}
-    					
-    				}
-    				
-    				case IN_NAME: {
-    					if ((ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || (ch >= '0' && ch <= '9') ||
-    							(ch == '_') || (ch == '$')) {
-    						value += (char)ch;
-    						reader.mark(1);
-    						ch = reader.read();
-    						break;
-    					} else {
-    						reader.reset();
-    						if (keywords.contains(value)) {
-    							backup = new Token(TokenType.KEYWORD, value);
-    							return backup;
-    						} else {
-    							backup = new Token(TokenType.NAME, value);
-    							return backup;
-    						}
-    					}
-    				}
-    				case IN_NUMBER: {
-    					
-    					if (ch >= '0' && ch <= '9') {
-    						value += (char)ch;
-    						reader.mark(1);
-    						ch = reader.read();
-    						lastWasE = false;
-    						lastWasSign = false;
-    						break;
-    					} else if (ch == '.') {
-    						if (!(dotted || exponented)) {
-    							value += (char)ch;
-    							reader.mark(1);
-    							ch = reader.read();
-    							
-    							// dot it and same as above
-    							dotted = true;
-    							lastWasE = false;
-    							lastWasSign = false;
-    							break;
-    						} else {
-    							reader.reset();
-    							if (lastWasE || lastWasSign) {
-    								backup = new Token(TokenType.ERROR, value);
-    								return backup;
-    							} else if (value.equals(".")){
-    							    backup = new Token(TokenType.SYMBOL, value);
-                                    return backup;
-    							} else {
-    								backup = new Token(TokenType.NUMBER, value);
-    								return backup;
-    							}
-    						}
-    					} else if (ch == 'e' || ch == 'E') { // this cannot possibly be the first encounter in this block in my setup
-    						// d&f are taken care of as token is immediately returned when d&f are appended
-    						// +&- are taken care of as +&- requires a preceding e
-    						if (!exponented) {// no for d&f  as well!!!
-    							value += (char)ch;
-    							reader.mark(1);
-    							ch = reader.read();
-    							
-    							dotted = true;
-    							exponented = true;
-    							lastWasE = true;
-    							lastWasSign = false;
-    							break;
-    						} else {
-    							reader.reset();
-    							if (lastWasE || lastWasSign) {
-    								backup = new Token(TokenType.ERROR, value);
-    								return backup;
-    							} else if (value.equals(".")){
-                                    backup = new Token(TokenType.SYMBOL, value);
-                                    return backup;
-    							} else {
-    								backup = new Token(TokenType.NUMBER, value);
-    								return backup;
-    							}
-    						}
-    						
-    					} else if (ch == '+' || ch == '-') { // this cannot be the first encounter in this block in my setup
-    						if (lastWasE) {
-    							value += (char)ch;
-    							reader.mark(1);
-    							ch = reader.read();
-    							dotted = true;
-    							exponented = true;
-    							lastWasE = false;
-    							lastWasSign = true;
-    							break;
-    
-    						} else {
-    							reader.reset();
-    							if (lastWasSign) {
-    								backup = new Token(TokenType.ERROR, value);
-    								return backup;
-    							} else if (value.equals(".")){
-                                    backup = new Token(TokenType.SYMBOL, value);
-                                    return backup;
-    							} else {
-    								backup = new Token(TokenType.NUMBER, value);
-    								return backup;
-    							}
-    						}
-    						
-    					} else if (ch == 'd' || ch == 'D' || ch == 'f' || ch == 'F' || ch == 'l' || ch == 'L') {
-    						if (lastWasE || lastWasSign) {
-    							reader.reset();
-    							backup = new Token(TokenType.ERROR, value);
-    							return backup;
-    						} else if (value.equals(".")){
-                                backup = new Token(TokenType.SYMBOL, value);
-                                return backup;
-                            } else {
-    							value += (char)ch;
-    							backup = new Token(TokenType.NUMBER, value);
-    							return backup;
-    						}
-    					} else {
-    						//if last was e or last was sign-> error
-    						reader.reset();
-    						if (lastWasE || lastWasSign) {
-    							backup = new Token(TokenType.ERROR, value);
-    							return backup;
-    						} else if (value.equals(".")){
-                                backup = new Token(TokenType.SYMBOL, value);
-                                return backup;
-                            } else {
-    							backup = new Token(TokenType.NUMBER, value);
-    							return backup;
-    						}
-    					}
-    				}
-    				case EOL: {
-    					if (ch == '\n') {
-    						backup = new Token(TokenType.EOL, "\n");
-    						return backup;
-    					}
-    					ch = reader.read();
-    					break;
-    				}
-    				default: { // this must never be the case
-    					assert false;
-    				}
-    			}
-    		}
-    		if (state == States.EOL) { // this must never be the case
-    			assert false;
-    			return null;
-    		} else {
-    		    backup = new Token(type, value);
-    		    if (type == TokenType.NAME) {
-    		        if (keywords.contains(value)) backup = new Token(TokenType.KEYWORD, value);
-    		    } else if (value.equals(".")){
-                    backup = new Token(TokenType.SYMBOL, value);
-                    return backup;
-    		    } else if (type == TokenType.NUMBER) {
-    		        if (lastWasE || lastWasSign) backup = new Token(TokenType.ERROR, value);
-    		    }
-    		    
-                return backup;             
-    		}
-		} catch (IOException e) {
-		    throw new RuntimeException("There was an IOException.");
+		if (!lookAhead(0)) {
+		    throw new RuntimeException("No more tokens!");
 		}
+		backup = makeToken(head);
+		backupStart = aheadStart[head];
+		skip();
+		return backup;
 	}
-	
+
+	/**
+	 * Tells whether the next token has the given type, without consuming it
+	 * and without creating a Token for it.
+	 *
+	 * @param type	expected type of the next token
+	 * @return True if there is a next token and it has the expected type
+	 */
+	public boolean nextMatches(TokenType type) {
+		if (pushedBack) return backup.getType() == type;
+		if (!lookAhead(0)) return false;
+		return aheadType[head] == type;
+	}
+
+	/**
+	 * Tells whether the next token has the given type and value, without
+	 * consuming it and without creating a Token for it.
+	 *
+	 * @param type	expected type of the next token
+	 * @param value	expected value of the next token; must not be null
+	 * @return True if there is a next token and it has the expected type and value
+	 */
+	public boolean nextMatches(TokenType type, String value) {
+		if (pushedBack) return backup.getType() == type && value.equals(backup.getValue());
+		if (!lookAhead(0)) return false;
+		return aheadType[head] == type && regionEquals(head, value);
+	}
+
+	/**
+	 * Returns the token k positions ahead without consuming anything:
+	 * peek(0) is the token the next call to next() will return.
+	 *
+	 * @param k	how far to look ahead, from 0 to LOOKAHEAD - 1
+	 * @return the token k positions ahead, or null if there are not that many tokens
+	 * @exception IllegalArgumentException If k is out of range
+	 */
+	public Token peek(int k) {
+		if (k < 0 || k >= LOOKAHEAD) throw new IllegalArgumentException("Can only look " + LOOKAHEAD + " tokens ahead.");
+		if (pushedBack) {
+		    if (k == 0) return backup;
+		    k--;
+		}
+		if (!lookAhead(k)) return null;
+		return makeToken((head + k) & MASK);
+	}
+
+	/**
+	 * Returns the index in the replayed token stream of the token the next
+	 * call to next() will return, or of the end of the replayed range if
+	 * there is none.
+	 *
+	 * @return index of the next token in the stream
+	 * @exception UnsupportedOperationException If this Tokenizer scans characters
+	 */
+	public int nextIndex() {
+		if (replay == null) throw new UnsupportedOperationException("Only a replaying Tokenizer has token indices.");
+		int index = ahead > 0 ? aheadIndex[head] : replay.index();
+		return pushedBack ? index - 1 : index;
+	}
+
+	/**
+	 * Returns the index in the source of the first character of the token the
+	 * next call to next() will return, or of the end of the input if there is
+	 * none.
+	 *
+	 * @return position of the next token
+	 */
+	public int nextStart() {
+		if (pushedBack) return backupStart;
+		if (lookAhead(0)) return aheadStart[head];
+		if (replay == null) return limit;
+		TokenStream tokens = replay.getStream();
+		return replay.index() < tokens.size() ? tokens.start(replay.index()) : source.length();
+	}
+
+	/**
+	 * Returns the characters this Tokenizer takes its tokens from.
+	 *
+	 * @return the source of the tokens
+	 */
+	public CharSequence getSource() {
+		return source;
+	}
+
 	/**
 	 * Takes back the token just returned by next(),
-	 * so that a subsequent call to next() will return the same token again. 
-	 * 
+	 * so that a subsequent call to next() will return the same token again.
+	 *
 	 * @exception UnsupportedOperationException
 	 */
 	public void pushBack() {
 		if (backup == null) throw new UnsupportedOperationException("Pushing back at the very beginning of the stream is illegal.");
 		pushedBack = true;
 	}
-	
 
+	//------------------------- Package-private scanning, used by TokenStream
+
+	/**
+	 * Makes sure the next token has been scanned (but not returned).
+	 *
+	 * @return False if there are no more tokens
+	 */
+	boolean scan() {
+		return lookAhead(0);
+	}
+
+	/**
+	 * Consumes the scanned token, without creating a Token for it.
+	 */
+	void skip() {
+		head = (head + 1) & MASK;
+		ahead--;
+	}
+
+	/**
+	 * Returns the type of the scanned token.
+	 */
+	TokenType scannedType() {
+		return aheadType[head];
+	}
+
+	/**
+	 * Returns the symbol id of the scanned token, or -1 if it is not a name or keyword.
+	 */
+	int scannedId() {
+		return aheadId[head];
+	}
+
+	/**
+	 * Returns the table the names of this Tokenizer are interned in.
+	 */
+	SymbolTable symbols() {
+		return symbols;
+	}
+
+	/**
+	 * Returns the index of the first character of the scanned token.
+	 */
+	int scannedStart() {
+		return aheadStart[head];
+	}
+
+	/**
+	 * Returns the index just past the last character of the scanned token.
+	 */
+	int scannedEnd() {
+		return aheadEnd[head];
+	}
+
+	//------------------------- Private "helper" methods
+
+	/**
+	 * Indicates whether there is input left beyond the tokens already scanned.
+	 */
+	private boolean hasMoreInput() {
+	    if (replay != null) return replay.hasNext();
+	    skipInsignificant();
+	    return position < limit;
+	}
+
+	/**
+	 * Makes sure the tokens up to k positions ahead have been scanned.
+	 *
+	 * @return False if there are not that many tokens
+	 */
+	private boolean lookAhead(int k) {
+	    while (ahead <= k) {
+	        if (!hasMoreInput()) return false;
+	        scanOne((head + ahead) & MASK);
+	        ahead++;
+	    }
+	    return true;
+	}
+
+	/**
+	 * Scans the token at the current position into the given slot of the ring
+	 * buffer, recording its type and extent. Identifiers are interned, and
+	 * recorded as KEYWORD if they are keywords.
+	 */
+	private void scanOne(int slot) {
+	    if (replay != null) {
+	        aheadIndex[slot] = replay.index();
+	        aheadType[slot] = replay.type();
+	        aheadId[slot] = replay.id();
+	        aheadStart[slot] = replay.start();
+	        aheadEnd[slot] = replay.start() + replay.length();
+	        replay.advance();
+	        return;
+	    }
+
+	    aheadStart[slot] = position;
+	    aheadId[slot] = -1;
+	    char ch = source.charAt(position);
+	    if (is(ch, NAME_START)) {
+	        scanName(slot);
+	    } else if (is(ch, NUMBER_START)) {
+	        scanNumber(slot);
+	    } else if (ch == '\n') {
+	        // also the end of a comment, whose body hasMoreInput() has skipped
+	        position++;
+	        aheadType[slot] = TokenType.EOL;
+	    } else {
+	        // symbol: any single character that isn't whitespace and isn't part of a name or number.
+	        position++;
+	        aheadType[slot] = TokenType.SYMBOL;
+	    }
+	    aheadEnd[slot] = position;
+	}
+
+	/**
+	 * Scans a name or keyword starting at the current position.
+	 */
+	private void scanName(int slot) {
+	    int i = position + 1;
+	    while (i < limit && is(source.charAt(i), NAME_PART)) {
+	        i++;
+	    }
+	    int id = symbols.intern(source, position, i);
+	    position = i;
+	    aheadId[slot] = id;
+	    aheadType[slot] = symbols.isKeyword(id) ? TokenType.KEYWORD : TokenType.NAME;
+	}
+
+	/**
+	 * Scans a number starting at the current position. A number has digits
+	 * with at most one dot, an optional exponent (e or E, optionally followed by
+	 * a sign) and may be ended by one of the suffixes d, D, f, F, l or L. A lone dot is
+	 * a symbol, and a number ending in an exponent without digits is an error.
+	 * The value of the number is parsed here, once; a number without any digit
+	 * (such as ".e5") is an error as well.
+	 */
+	private void scanNumber(int slot) {
+	    int start = position;
+	    int i = start;
+	    boolean dotted = false;
+	    boolean exponented = false;
+	    boolean lastWasE = false;
+	    boolean lastWasSign = false;
+
+	    while (i < limit) {
+	        char ch = source.charAt(i);
+	        if (ch >= '0' && ch <= '9') {
+	            lastWasE = false;
+	            lastWasSign = false;
+	        } else if (ch == '.' && !(dotted || exponented)) {
+	            dotted = true;
+	            lastWasE = false;
+	            lastWasSign = false;
+	        } else if ((ch == 'e' || ch == 'E') && !exponented) {
+	            dotted = true;
+	            exponented = true;
+	            lastWasE = true;
+	            lastWasSign = false;
+	        } else if ((ch == '+' || ch == '-') && lastWasE) {
+	            lastWasE = false;
+	            lastWasSign = true;
+	        } else if (isSuffix(ch) && !(lastWasE || lastWasSign) && !isLoneDot(start, i)) {
+	            i++; // the suffix ends the number
+	            break;
+	        } else {
+	            break;
+	        }
+	        i++;
+	    }
+
+	    position = i;
+	    if (lastWasE || lastWasSign) aheadType[slot] = TokenType.ERROR;
+	    else if (isLoneDot(start, i)) aheadType[slot] = TokenType.SYMBOL;
+	    else {
+	        aheadNumber[slot] = Token.parseNumber(source, start, i);
+	        aheadType[slot] = Double.isNaN(aheadNumber[slot]) ? TokenType.ERROR : TokenType.NUMBER;
+	    }
+	}
+
+	/**
+	 * Returns the Token for the scanned token in the given slot; only numbers and errors get a new one.
+	 */
+	private Token makeToken(int slot) {
+	    if (replay != null) return replay.getStream().token(aheadIndex[slot]);
+	    if (aheadId[slot] >= 0) return symbols.token(aheadId[slot]);
+	    TokenType type = aheadType[slot];
+	    int start = aheadStart[slot];
+	    int end = aheadEnd[slot];
+	    if (type == TokenType.NUMBER) return new Token(TokenType.NUMBER, slice(start, end), aheadNumber[slot]);
+	    if (type == TokenType.EOL) return Token.NEWLINE;
+	    if (type == TokenType.SYMBOL && end == start + 1) return Token.symbol(source.charAt(start));
+	    return new Token(type, slice(start, end));
+	}
+
+	/**
+	 * Tells whether the characters of the scanned token in the given slot are those of the given value.
+	 */
+	private boolean regionEquals(int slot, String value) {
+	    if (aheadType[slot] == TokenType.EOL) return value.equals("\n");
+	    int start = aheadStart[slot];
+	    int length = aheadEnd[slot] - start;
+	    if (value.length() != length) return false;
+	    for (int i = 0; i < length; i++) {
+	        if (source.charAt(start + i) != value.charAt(i)) return false;
+	    }
+	    return true;
+	}
+
+	/**
+	 * Tells whether the character has any of the given character classes.
+	 */
+	private static boolean is(char ch, byte charClass) {
+	    return ch < 128 && (CHAR_CLASS[ch] & charClass) != 0;
+	}
+
+	/**
+	 * Tells whether the character is one of the number suffixes d, D, f, F, l and L.
+	 */
+	private static boolean isSuffix(char ch) {
+	    return ch == 'd' || ch == 'D' || ch == 'f' || ch == 'F' || ch == 'l' || ch == 'L';
+	}
+
+	/**
+	 * Tells whether the characters from start to end are a single dot.
+	 */
+	private boolean isLoneDot(int start, int end) {
+	    return end == start + 1 && source.charAt(start) == '.';
+	}
+
+	/**
+	 * Tells whether a "//" comment starts at the given index.
+	 */
+	private boolean isCommentStart(int i) {
+	    return source.charAt(i) == '/' && i + 1 < limit && source.charAt(i + 1) == '/';
+	}
+
+	/**
+	 * Moves the position past blanks and past the body of a "//" comment, leaving it
+	 * at the newline that ends the comment. A comment that is not ended by a newline
+	 * runs to the limit and produces no token. Every character is skipped at most once.
+	 */
+	private void skipInsignificant() {
+	    position = skipBlanks(position);
+	    if (position < limit && isCommentStart(position)) {
+	        position = indexOfNewline(position + 2);
+	    }
+	}
+
+	/**
+	 * Returns the index of the first character at or after i that is not a blank.
+	 */
+	private int skipBlanks(int i) {
+	    while (i < limit && is(source.charAt(i), BLANK)) {
+	        i++;
+	    }
+	    return i;
+	}
+
+	/**
+	 * Returns the index of the first newline at or after i, or the limit if there is none.
+	 */
+	private int indexOfNewline(int i) {
+	    while (i < limit && source.charAt(i) != '\n') {
+	        i++;
+	    }
+	    return i;
+	}
+
+	/**
+	 * Returns the characters from start (inclusive) to end (exclusive) as a String.
+	 */
+	private String slice(int start, int end) {
+	    return source.subSequence(start, end).toString();
+	}
+
+	/**
+	 * Reads everything the reader has to offer.
+	 *
+	 * @param reader	Reader to be drained; may be null
+	 * @return the characters read, or null if the reader is null
+	 * @exception RuntimeException  If an I/O error occurs
+	 */
+	private static CharSequence readFully(Reader reader) {
+	    if (reader == null) return null;
+	    StringBuilder builder = new StringBuilder();
+	    char[] chunk = new char[8192];
+	    try {
+	        int n;
+	        while ((n = reader.read(chunk)) != -1) {
+	            builder.append(chunk, 0, n);
+	        }
+	    } catch (IOException e) {
+	        throw new RuntimeException("There was an IOException.");
+	    }
+	    return builder.toString();
+	}
 }
@@ -1,13 +1,19 @@
 
 package tree;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
 import java.util.StringTokenizer;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * @author Joopyo Hong
@@ -16,6 +22,8 @@ import java.util.StringTokenizer;
 public class Tree<V> {
 	private V value;
 	private ArrayList<Tree<V>> children;
+	private boolean shared = false; // made by a TreeInterner, so immutable
+	private int hash;               // structural hash, cached for a shared node
 	
 	
 	/**
@@ -29,6 +37,23 @@ public class Tree<V> {
 		this.children = new ArrayList<Tree<V>>(Arrays.asList(children));
 	}
 	
+	/**
+	 * Creates a shared node, for a TreeInterner. Its children must be shared
+	 * nodes too, so its structural hash is computed from theirs.
+	 * 
+	 * @param value		value for this node
+	 * @param children	list of shared children
+	 * @return the shared node
+	 */
+	static <V> Tree<V> shared(V value, List<Tree<V>> children) {
+		Tree<V> tree = new Tree<V>(value);
+		tree.children.addAll(children);
+		tree.children.trimToSize();
+		tree.hash = tree.hashCode();
+		tree.shared = true;
+		return tree;
+	}
+	
 	
 	/**
 	 * Gets value of this tree.
@@ -87,6 +112,7 @@ public class Tree<V> {
 	 * @return iterator
 	 */
 	public Iterator<Tree<V>> children() {
+		if (shared) return Collections.unmodifiableList(children).iterator();
 		return children.iterator();
 	}
 	
@@ -99,6 +125,17 @@ public class Tree<V> {
 		return numberOfChildren() == 0;
 	}
 	
+	/**
+	 * Returns whether or not this node is shared, i.e. was made by a
+	 * TreeInterner. A shared node may be the child of any number of nodes,
+	 * so it cannot be changed.
+	 * 
+	 * @return whether or not this node is shared
+	 */
+	public boolean isShared() {
+		return shared;
+	}
+	
 	/**
 	 * Checks whether a given node is part of this tree.
 	 * 
@@ -106,16 +143,116 @@ public class Tree<V> {
 	 * @return whether or not the the target node is the descendant of this tree
 	 */
 	private boolean contains(Tree<V> node) {		
-		if (this == node) return true; // main operation
-		
-		if (this.isLeaf()) return false; // base case
-		
-		for (int i = 0; i < this.numberOfChildren(); i++) { // recursive calls
-			if (this.child(i).contains(node)) return true;
+		for (Iterator<Tree<V>> nodes = preorder(); nodes.hasNext();) {
+			if (nodes.next() == node) return true;
 		}
 		return false;
 	}
 	
+	/**
+	 * Returns an iterator over the nodes of this tree in preorder: each node
+	 * before its children. The iterator keeps a single stack, of the nodes
+	 * from this tree down to the current one.
+	 * 
+	 * @return preorder iterator
+	 */
+	public Iterator<Tree<V>> preorder() {
+		return new Iterator<Tree<V>>() {
+			private final Path<V> path = new Path<V>();
+			private Tree<V> next = Tree.this;
+			
+			@Override
+			public boolean hasNext() {
+				return next != null;
+			}
+			
+			@Override
+			public Tree<V> next() {
+				if (next == null) throw new NoSuchElementException();
+				Tree<V> node = next;
+				path.push(node);
+				next = null;
+				while (next == null && path.depth() > 0) {
+					next = path.nextChild();
+					if (next == null) path.pop();
+				}
+				return node;
+			}
+			
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+	
+	/**
+	 * Returns an iterator over the nodes of this tree in postorder: each node
+	 * after its children. The iterator keeps a single stack, of the nodes
+	 * from this tree down to the current one.
+	 * 
+	 * @return postorder iterator
+	 */
+	public Iterator<Tree<V>> postorder() {
+		final Path<V> path = new Path<V>();
+		path.push(this);
+		return new Iterator<Tree<V>>() {
+			
+			@Override
+			public boolean hasNext() {
+				return path.depth() > 0;
+			}
+			
+			@Override
+			public Tree<V> next() {
+				if (path.depth() == 0) throw new NoSuchElementException();
+				while (true) {
+					Tree<V> child = path.nextChild();
+					if (child == null) return path.pop();
+					path.push(child);
+				}
+			}
+			
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+	
+	/**
+	 * Returns a Spliterator over the nodes of this tree, in preorder. It
+	 * splits off runs of sibling subtrees, and when a single subtree is left,
+	 * its root and first children from the rest, so that the parts of a large
+	 * tree can be walked by different threads. A node that is shared by more
+	 * than one parent is met once for each.
+	 * 
+	 * @return spliterator over the nodes
+	 */
+	public Spliterator<Tree<V>> spliterator() {
+		return new TreeSpliterator<V>(null, Collections.singletonList(this), 0, 1, Long.MAX_VALUE);
+	}
+	
+	/**
+	 * Returns a sequential Stream of the nodes of this tree, in preorder.
+	 * 
+	 * @return stream of the nodes
+	 */
+	public Stream<Tree<V>> stream() {
+		return StreamSupport.stream(spliterator(), false);
+	}
+	
+	/**
+	 * Returns a parallel Stream of the nodes of this tree, which splits the
+	 * tree among threads as described for {@link #spliterator()}. The tree
+	 * must not be changed while it is being walked.
+	 * 
+	 * @return parallel stream of the nodes
+	 */
+	public Stream<Tree<V>> parallelStream() {
+		return StreamSupport.stream(spliterator(), true);
+	}
+	
 	/**
 	 * Compares given object(potentially a tree) with this tree. 
 	 * 
@@ -124,55 +261,112 @@ public class Tree<V> {
 	 */
 	@Override public boolean equals(Object object) {
 		
+		if (this == object) return true; // same node, as shared nodes often are
 		if (object == null) return (this == object); // null scenario
 		if (!(object instanceof Tree)) return false; // tree-or-not check
 		
-		Tree<V> target = (Tree<V>)object;
-		if (this.getValue() == null) {
-		    if (!(target.getValue() == null)) return false;                    // value check(null case)
-		} else {
-		    if (!(this.getValue().equals(target.getValue()))) return false;     // value check(otherwise)
+		Tree<?> node = this;
+		Tree<?> target = (Tree<?>)object;
+		List<Tree<?>> pending = null; // corresponding descendants still to be compared, in pairs
+		while (true) {
+			if (node.shared && target.shared && node.hash != target.hash) return false; // cached hash check
+			if (node.getValue() == null) {
+			    if (!(target.getValue() == null)) return false;                    // value check(null case)
+			} else {
+			    if (!(node.getValue().equals(target.getValue()))) return false;     // value check(otherwise)
+			}
+			if (node.numberOfChildren() != target.numberOfChildren()) return false; // # of children check
+			
+			for (int i = node.numberOfChildren() - 1; i >= 0; i--) {	// corresponding children, unless the same
+				if (node.children.get(i) != target.children.get(i)) {
+					if (pending == null) pending = new ArrayList<Tree<?>>();
+					pending.add(node.children.get(i));
+					pending.add(target.children.get(i));
+				}
+			}
+			
+			if (pending == null || pending.isEmpty()) return true;
+			target = pending.remove(pending.size() - 1);
+			node = pending.remove(pending.size() - 1);
 		}
-		if (this.numberOfChildren() != target.numberOfChildren()) return false; // # of children check
-		
-		for (int i = 0; i < this.numberOfChildren(); i++) {				// corresponding children equality check
-			if (!(this.child(i).equals(target.child(i)))) return false;
+	}
+	
+	/**
+	 * Returns the structural hash code of this tree, which is computed from
+	 * the values of all of its nodes; equal trees have equal hash codes. It
+	 * is cached in a shared node, and computed anew for any other.
+	 * 
+	 * @return the hash code for this tree
+	 */
+	@Override public int hashCode() {
+		if (shared) return hash;
+		// hashes[d] is the hash so far of the node at depth d of the path; the
+		// hash of a node is combined into its parent's when the node is done
+		Path<V> path = new Path<V>();
+		int[] hashes = new int[16];
+		path.push(this);
+		hashes[0] = value == null ? 0 : value.hashCode();
+		while (true) {
+			int depth = path.depth();
+			Tree<V> child = path.nextChild();
+			if (child == null) {
+				path.pop();
+				if (depth == 1) return hashes[0];
+				hashes[depth - 2] = 31 * hashes[depth - 2] + hashes[depth - 1];
+			} else if (child.shared) {
+				hashes[depth - 1] = 31 * hashes[depth - 1] + child.hash;
+			} else {
+				path.push(child);
+				if (depth == hashes.length) hashes = Arrays.copyOf(hashes, 2 * depth);
+				hashes[depth] = child.value == null ? 0 : child.value.hashCode();
+			}
 		}
-		
-		return true;
 	}
 	
 	/**
-	 * Returns string representation of this tree.
+	 * Returns string representation of this tree: the value of each node on
+	 * a line of its own, indented by two spaces per level, in preorder.
 	 * 
 	 * @return string representation
 	 */
 	@Override
 	public String toString() {
-		return project(this, 0);
+		StringBuilder builder = new StringBuilder();
+		try {
+			print(builder);
+		} catch (IOException e) {
+			throw new IllegalStateException(e); // a StringBuilder never throws
+		}
+		return builder.toString();
 	}
 	
 	/**
-	 * Returns string representation of this tree.
-	 * Works as a helper method for toString()
+	 * Writes the string representation of this tree to out, as toString()
+	 * returns it. The tree is walked without recursion, and each line is
+	 * written straight to out, so the time taken is linear in the length of
+	 * the output, for a tree of any depth.
 	 * 
-	 * @param tree		tree to be string-represented
-	 * @param count		number of times 2 empty space are concatenated
-	 * @return string representation
+	 * @param out		destination of the string representation
+	 * @exception IOException	if out throws one
 	 */
-	private String project(Tree<V> tree, int count) {
-		String str = tree.value.toString() + "\n";
-		for (int i = 0; i < count; i++) {
-			str = "  " + str;
-		}
-		
-		if (tree.numberOfChildren() == 0) { // base case
-			return str;
-		} else {
-			for (int i = 0; i < tree.numberOfChildren(); i++) {
-				str = str + project(tree.child(i), count + 1);
+	public void print(Appendable out) throws IOException {
+		String indent = "                "; // shared by all lines, doubled when too short
+		List<Iterator<Tree<V>>> path = new ArrayList<Iterator<Tree<V>>>(); // the children left at each level
+		out.append(String.valueOf(value)).append('\n');
+		path.add(children.iterator());
+		while (!path.isEmpty()) {
+			Iterator<Tree<V>> siblings = path.get(path.size() - 1);
+			if (!siblings.hasNext()) {
+				path.remove(path.size() - 1);
+				continue;
 			}
-			return str;
+			Tree<V> tree = siblings.next();
+			int width = 2 * path.size();
+			while (indent.length() < width) {
+				indent = indent + indent;
+			}
+			out.append(indent, 0, width).append(String.valueOf(tree.value)).append('\n');
+			path.add(tree.children.iterator());
 		}
 	}
 	
@@ -180,8 +374,10 @@ public class Tree<V> {
 	 * Sets value of the node.
 	 * 
 	 * @param value	new value of the node
+	 * @exception UnsupportedOperationException	if this node is shared
 	 */
 	public void setValue(V value) {
+		checkNotShared();
 		this.value = value;
 	}
 	
@@ -190,8 +386,10 @@ public class Tree<V> {
 	 * 
 	 * @param newChild						
 	 * @exception IllegalArgumentException		if post-operation resultant tree is invalid
+	 * @exception UnsupportedOperationException	if this node is shared
 	 */
 	public void addChild(Tree<V> newChild) throws IllegalArgumentException {
+		checkNotShared();
 		if (newChild.contains(this)) {
 			throw new IllegalArgumentException();
 		} else {
@@ -199,14 +397,30 @@ public class Tree<V> {
 		}
 	}
 	
+	/**
+	 * Adds newChild as the new last child of this tree, without checking that
+	 * this tree is not part of newChild. Only for callers that cannot create a
+	 * cycle, such as one building a tree bottom-up from fresh nodes; it takes
+	 * constant time, where addChild(newChild) walks all of newChild.
+	 * 
+	 * @param newChild	tree that does not contain this tree
+	 * @exception UnsupportedOperationException	if this node is shared
+	 */
+	public void addChildUnchecked(Tree<V> newChild) {
+		checkNotShared();
+		children.add(newChild);
+	}
+	
 	/**
 	 * Adds newChild at given index in the tree.
 	 * 
 	 * @param index		
 	 * @param newChild
 	 * @exception IllegalArgumentException		if post-operation resultant tree is invalid
+	 * @exception UnsupportedOperationException	if this node is shared
 	 */
 	public void addChild(int index, Tree<V> newChild) throws IllegalArgumentException {
+		checkNotShared();
 		if (index == 0 && this.numberOfChildren() == 0 && !newChild.contains(this)) {
 			children.add(newChild);
 		} else if (index < 0 || index > this.numberOfChildren() || newChild.contains(this)) {
@@ -221,8 +435,10 @@ public class Tree<V> {
 	 * 
 	 * @param children							array of trees(nodes)
 	 * @exception IllegalArgumentException		if post-operation resultant tree is invalid
+	 * @exception UnsupportedOperationException	if this node is shared
 	 */
 	public void addChildren(Tree<V>... children ) throws IllegalArgumentException {
+		checkNotShared();
 		for (int i = 0; i < children.length; i++) {
 			if (children[i].contains(this)) {
 				throw new IllegalArgumentException();
@@ -238,13 +454,24 @@ public class Tree<V> {
 	 * @param index
 	 * @return the removed child
 	 * @exception NoSuchElementException	if index is out of legal bound
+	 * @exception UnsupportedOperationException	if this node is shared
 	 */
 	public Tree<V> removeChild(int index) throws NoSuchElementException {
+		checkNotShared();
 		if (index < 0 || index >= this.numberOfChildren()) {
 			throw new NoSuchElementException();			
 		} else return children.remove(index);
 	}
 	
+	/**
+	 * Checks that this node may be changed.
+	 * 
+	 * @exception UnsupportedOperationException	if this node is shared
+	 */
+	private void checkNotShared() {
+		if (shared) throw new UnsupportedOperationException("A shared tree cannot be changed");
+	}
+	
     /**
      * Parses a string of the general form
      * <code>value(child, child, ..., child)</code> and returns the
@@ -285,33 +512,174 @@ public class Tree<V> {
      */
     private static Tree<String> parse(List<String> tokens)
             throws IllegalArgumentException {
-        // No tokens -- return null
-        if (tokens.size() == 0) {
-            return null;
-        }
-        // Get the next token and remove it from the list
-        String token = tokens.remove(0);
-        // If the token is an open parenthesis
-        if (token.equals("(")) {
-            throw new IllegalArgumentException(
-                "Unexpected open parenthesis before " + tokens);
-        }
-        // If the token is a close parenthesis, we are at the end of a list of
-        // children
-        if (token.equals(")")) {
-            return null;
-        }
-        // Make a tree with this token as its value
-        Tree<String> tree = new Tree<String>(token);
-        // Check for children
-        if (tokens.size() > 0 && tokens.get(0).equals("(")) {
-            tokens.remove(0);
-            Tree<String> child;
-            while ((child = parse(tokens)) != null) {
-                tree.addChildren(child);
+        // the trees whose children are being parsed, outermost first
+        List<Tree<String>> open = new ArrayList<Tree<String>>();
+        while (true) {
+            Tree<String> tree = null;
+            // No tokens -- null
+            if (tokens.size() > 0) {
+                // Get the next token and remove it from the list
+                String token = tokens.remove(0);
+                // If the token is an open parenthesis
+                if (token.equals("(")) {
+                    throw new IllegalArgumentException(
+                        "Unexpected open parenthesis before " + tokens);
+                }
+                // If the token is a close parenthesis, we are at the end of a
+                // list of children -- null
+                if (!token.equals(")")) {
+                    // Make a tree with this token as its value
+                    tree = new Tree<String>(token);
+                    // Check for children, which are parsed next
+                    if (tokens.size() > 0 && tokens.get(0).equals("(")) {
+                        tokens.remove(0);
+                        open.add(tree);
+                        continue;
+                    }
+                }
+            }
+            // A tree is the next child of the innermost open tree; null closes
+            // that tree, which is then the next child of the one outside it
+            while (true) {
+                if (open.isEmpty()) return tree;
+                if (tree != null) {
+                    open.get(open.size() - 1).addChildUnchecked(tree);
+                    break;
+                }
+                tree = open.remove(open.size() - 1);
             }
         }
-        return tree;
     }
 	
+	/**
+	 * A stack of the nodes from the top of a walk down to the current one,
+	 * each with the index of its next child to be walked.
+	 */
+	private static class Path<V> {
+		private Object[] nodes = new Object[16];
+		private int[] nextChildren = new int[16];
+		private int depth = 0;
+		
+		/**
+		 * Returns the number of nodes on the path.
+		 */
+		int depth() {
+			return depth;
+		}
+		
+		/**
+		 * Adds a node to the bottom of the path, with all of its children to come.
+		 */
+		void push(Tree<V> node) {
+			if (depth == nodes.length) {
+				nodes = Arrays.copyOf(nodes, 2 * depth);
+				nextChildren = Arrays.copyOf(nextChildren, 2 * depth);
+			}
+			nodes[depth] = node;
+			nextChildren[depth] = 0;
+			depth++;
+		}
+		
+		/**
+		 * Removes and returns the bottom node of the path.
+		 */
+		@SuppressWarnings("unchecked")
+		Tree<V> pop() {
+			depth--;
+			Tree<V> node = (Tree<V>) nodes[depth];
+			nodes[depth] = null;
+			return node;
+		}
+		
+		/**
+		 * Returns the next child of the bottom node, and moves past it, or
+		 * returns null if it has no more children.
+		 */
+		@SuppressWarnings("unchecked")
+		Tree<V> nextChild() {
+			Tree<V> node = (Tree<V>) nodes[depth - 1];
+			int index = nextChildren[depth - 1];
+			if (index == node.children.size()) return null;
+			nextChildren[depth - 1] = index + 1;
+			return node.children.get(index);
+		}
+	}
+	
+	/**
+	 * Walks, in preorder, an optional first node and then whole subtrees: a
+	 * range of siblings. The size of a tree is not known without walking it,
+	 * so the estimated size starts out unknown and is divided with each split.
+	 */
+	private static class TreeSpliterator<V> implements Spliterator<Tree<V>> {
+		private Tree<V> first;              // node to be met before the subtrees, if any
+		private List<Tree<V>> siblings;
+		private int lo;                     // the subtrees still to be walked are
+		private int hi;                     // siblings lo (inclusive) to hi (exclusive)
+		private final Path<V> path = new Path<V>(); // the subtree being walked, if any
+		private long estimate;
+		
+		TreeSpliterator(Tree<V> first, List<Tree<V>> siblings, int lo, int hi, long estimate) {
+			this.first = first;
+			this.siblings = siblings;
+			this.lo = lo;
+			this.hi = hi;
+			this.estimate = estimate;
+		}
+		
+		@Override
+		public boolean tryAdvance(Consumer<? super Tree<V>> action) {
+			if (action == null) throw new NullPointerException();
+			if (first != null) {
+				Tree<V> node = first;
+				first = null;
+				action.accept(node);
+				return true;
+			}
+			while (path.depth() > 0) {
+				Tree<V> child = path.nextChild();
+				if (child != null) {
+					path.push(child);
+					action.accept(child);
+					return true;
+				}
+				path.pop();
+			}
+			if (lo >= hi) return false;
+			Tree<V> node = siblings.get(lo++);
+			path.push(node);
+			action.accept(node);
+			return true;
+		}
+		
+		@Override
+		public Spliterator<Tree<V>> trySplit() {
+			if (path.depth() > 0) return null; // in the middle of a subtree
+			if (first == null && hi - lo == 1) {
+				// a single subtree: its root comes first, then its children
+				first = siblings.get(lo);
+				siblings = first.children;
+				lo = 0;
+				hi = siblings.size();
+			}
+			int count = hi - lo;
+			if (count == 0 || (count == 1 && first == null)) return null;
+			int middle = lo + count / 2;
+			long prefixEstimate = count == 1 ? 1 : estimate / 2;
+			TreeSpliterator<V> prefix = new TreeSpliterator<V>(first, siblings, lo, middle, prefixEstimate);
+			first = null;
+			lo = middle;
+			estimate -= prefixEstimate;
+			return prefix;
+		}
+		
+		@Override
+		public long estimateSize() {
+			return estimate;
+		}
+		
+		@Override
+		public int characteristics() {
+			return ORDERED | NONNULL;
+		}
+	}
 }
@@ -0,0 +1,113 @@
+package tree;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hash-conses trees: every tree passed to intern() is rebuilt from shared
+ * nodes, one for each distinct subtree, so that a subtree that occurs any
+ * number of times, in one tree or in several, is stored once. The result is
+ * a DAG that is equal to the tree it was made from. Its nodes cannot be
+ * changed, and each caches its structural hash, so comparing two of them
+ * takes constant time when they are the same node or have different hashes.
+ * <p>
+ * The values in the trees must not change once interned; Tokens and Strings
+ * never do.
+ *
+ * @author Joopyo Hong
+ */
+public class TreeInterner<V> {
+	private final Map<Tree<V>, Tree<V>> table = new HashMap<Tree<V>, Tree<V>>();
+	private long nodeCount = 0;
+	private long createdCount = 0;
+
+	/**
+	 * Returns a shared tree equal to the given one. The tree is walked
+	 * without recursion, so it may be of any depth; it is not changed.
+	 *
+	 * @param tree	tree to be interned
+	 * @return the equal shared tree
+	 * @exception IllegalArgumentException	if the tree is null
+	 */
+	public Tree<V> intern(Tree<V> tree) {
+		if (tree == null) throw new IllegalArgumentException();
+		List<Tree<V>> path = new ArrayList<Tree<V>>();                   // nodes whose children are being interned
+		List<Iterator<Tree<V>>> siblings = new ArrayList<Iterator<Tree<V>>>(); // the children left of each
+		List<Tree<V>> interned = new ArrayList<Tree<V>>();               // interned children, of all of the path
+
+		path.add(tree);
+		siblings.add(tree.children());
+		while (true) {
+			int top = path.size() - 1;
+			Iterator<Tree<V>> children = siblings.get(top);
+			if (children.hasNext()) {
+				Tree<V> child = children.next();
+				if (child.isShared() && table.get(child) == child) {
+					interned.add(child);
+				} else {
+					path.add(child);
+					siblings.add(child.children());
+				}
+				continue;
+			}
+
+			// all the children of the top node are interned, and last in the list
+			Tree<V> node = path.remove(top);
+			siblings.remove(top);
+			List<Tree<V>> nodeChildren = interned.subList(interned.size() - node.numberOfChildren(), interned.size());
+			Tree<V> candidate = Tree.shared(node.getValue(), nodeChildren);
+			nodeChildren.clear();
+			Tree<V> shared = table.get(candidate);
+			if (shared == null) {
+				shared = candidate;
+				table.put(shared, shared);
+				createdCount++;
+			}
+			nodeCount++;
+			if (top == 0) return shared;
+			interned.add(shared);
+		}
+	}
+
+	/**
+	 * Returns the number of nodes that have been interned, i.e. the number
+	 * of nodes in all the trees passed to intern(), not counting subtrees
+	 * that were already shared.
+	 *
+	 * @return number of interned nodes
+	 */
+	public long getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * Returns the number of distinct shared nodes, which stand for all the
+	 * interned nodes.
+	 *
+	 * @return number of shared nodes
+	 */
+	public long getSharedCount() {
+		return createdCount;
+	}
+
+	/**
+	 * Returns the number of nodes saved by sharing: interned nodes that did
+	 * not need a shared node of their own.
+	 *
+	 * @return number of nodes saved
+	 */
+	public long getSavedCount() {
+		return nodeCount - createdCount;
+	}
+
+	/**
+	 * Forgets all shared nodes; they stay valid, but equal trees interned
+	 * later will not share them.
+	 */
+	public void clear() {
+		table.clear();
+	}
+}